@@ -0,0 +1,54 @@
+package com.example.demo.model;
+
+import com.example.demo.repository.SyntheticData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serialization of a request_info chat response with typed payloads against the same JSON written from the
+ * {@code Map<String, Object>} information it replaced. Run with -prof gc to compare the garbage per response.
+ */
+@State(Scope.Benchmark)
+public class ChatResponseSerializationBenchmark {
+    private static final String MESSAGE = "Estoy recuperando la información de precios y stock";
+
+    @Param({"1", "20", "100"})
+    private int productCount;
+
+    private ObjectMapper objectMapper;
+    private List<Product> products;
+    private Map<String, Object> legacyInformation;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        products = SyntheticData.products(productCount);
+        legacyInformation = new HashMap<>();
+        legacyInformation.put("type", "request_info");
+        legacyInformation.put("response", products);
+    }
+
+    @Benchmark
+    public byte[] typedPayload() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(new ChatResponse("CLI-001", MESSAGE, new ChatPayload.RequestInfo(products)));
+    }
+
+    @Benchmark
+    public byte[] mapPayload() throws JsonProcessingException {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("client", "CLI-001");
+        response.put("responseMessage", MESSAGE);
+        response.put("information", legacyInformation);
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
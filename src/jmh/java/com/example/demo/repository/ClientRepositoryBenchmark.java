@@ -0,0 +1,36 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Client;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+
+@State(Scope.Benchmark)
+public class ClientRepositoryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int clientCount;
+
+    private ClientRepository clientRepository;
+    private String existingCode;
+
+    @Setup
+    public void setUp() {
+        clientRepository = SyntheticData.clientRepository(clientCount);
+        existingCode = SyntheticData.clientCode(clientCount / 2).toLowerCase();
+    }
+
+    @Benchmark
+    public Optional<Client> findByCodigoCliente_Existing() {
+        return clientRepository.findByCodigoCliente(existingCode);
+    }
+
+    @Benchmark
+    public Optional<Client> findByCodigoCliente_Missing() {
+        return clientRepository.findByCodigoCliente("CLI-X");
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+@State(Scope.Benchmark)
+public class ProductRepositoryBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int catalogSize;
+
+    private ProductRepository productRepository;
+
+    @Setup
+    public void setUp() {
+        productRepository = SyntheticData.productRepository(catalogSize);
+    }
+
+    @Benchmark
+    public List<Product> findByProductNameKeywords_Phrase() {
+        return productRepository.findByProductNameKeywords(List.of("perno hexagonal 1/4\" x 2\""));
+    }
+
+    @Benchmark
+    public List<Product> findByProductNameKeywords_SeveralWords() {
+        return productRepository.findByProductNameKeywords(List.of("mariposa", "m8", "inoxidable"));
+    }
+
+    @Benchmark
+    public List<Product> findByProductNameKeywords_Infix() {
+        // Inside a word: only the products containing its rarest trigram are checked
+        return productRepository.findByProductNameKeywords(List.of("xidab"));
+    }
+
+    @Benchmark
+    public List<Product> findByProductName() {
+        return productRepository.findByProductName("Perno Hexagonal 1/4\" x 2\" Acero Zincado");
+    }
+
+    @Benchmark
+    public String normalizeKeyword() {
+        return ProductRepository.normalizeKeyword("Precio del Perno Hexagonal 1/4\" x 2\" Acero Zincado");
+    }
+}
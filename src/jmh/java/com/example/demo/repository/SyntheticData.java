@@ -0,0 +1,81 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Client;
+import com.example.demo.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic catalogs and client lists shaped like the JSON files under database/,
+ * so the benchmarks can measure how the lookups scale from a few products to a million.
+ */
+public final class SyntheticData {
+    private static final String[] TYPES = {"perno", "tuerca", "volanda"};
+    private static final String[] SHAPES = {"Hexagonal", "Allen", "Carrocero", "Mariposa", "Ciega", "Flangeada", "Plana", "de Presión"};
+    private static final String[] DIAMETERS = {"1/4\"", "5/16\"", "3/8\"", "1/2\"", "5/8\"", "M6", "M8", "M10", "M12", "M16"};
+    private static final String[] LENGTHS = {"1\"", "2\"", "3\"", "4\"", "6\""};
+    private static final String[] FINISHES = {"Acero Zincado", "Inoxidable", "Galvanizada", "Alta Resistencia", "Grado 8", "con Nylon"};
+    private static final String[] DISTRICTS = {"San Isidro", "Miraflores", "Surco", "La Molina", "Cercado", "Los Olivos"};
+    private static final String[] CITIES = {"Lima", "Arequipa", "Trujillo", "Cusco", "Piura"};
+
+    private SyntheticData() {
+    }
+
+    public static ProductRepository productRepository(int size) {
+        return new ProductRepository(products(size));
+    }
+
+    public static ClientRepository clientRepository(int size) {
+        return new ClientRepository(clients(size));
+    }
+
+    public static CompletedPurchaseRepository emptyPurchaseRepository() {
+        return new CompletedPurchaseRepository(List.of());
+    }
+
+    /**
+     * Products with codes P-000001, T-000002, V-000003, ... cycling through the product types, and names built
+     * from the same vocabulary as the real catalog ("Perno Hexagonal 1/4" x 2" Acero Zincado").
+     */
+    public static List<Product> products(int size) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String type = TYPES[i % TYPES.length];
+            String name = capitalize(type) + " " + pick(random, SHAPES) + " " + pick(random, DIAMETERS)
+                    + ("perno".equals(type) ? " x " + pick(random, LENGTHS) : "") + " " + pick(random, FINISHES);
+            double unitPrice = 0.05 + random.nextInt(500) / 100.0;
+            products.add(new Product(productCode(i), type, name, random.nextInt(5000), unitPrice,
+                    Math.round(unitPrice * 85) / 100.0));
+        }
+        return products;
+    }
+
+    public static String productCode(int index) {
+        return String.format("%s-%06d", TYPES[index % TYPES.length].substring(0, 1).toUpperCase(), index);
+    }
+
+    public static List<Client> clients(int size) {
+        Random random = new Random(42);
+        List<Client> clients = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            clients.add(new Client(clientCode(i), "Cliente " + i, "Av. Sintética " + i, pick(random, DISTRICTS),
+                    pick(random, CITIES), "+51 1 " + (1000000 + i), "cliente" + i + "@email.com"));
+        }
+        return clients;
+    }
+
+    public static String clientCode(int index) {
+        return String.format("CLI-%06d", index);
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String capitalize(String value) {
+        return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+    }
+}
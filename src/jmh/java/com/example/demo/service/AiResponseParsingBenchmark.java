@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatResponse;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.SyntheticData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.time.Duration;
+
+/**
+ * Parsing of completions shaped like the ones the LLM returns for each request type.
+ */
+@State(Scope.Benchmark)
+public class AiResponseParsingBenchmark {
+    private static final String BENCHMARK_API_KEY = "sk-benchmark-0000000000000000000000000000000000000000";
+
+    @Param({"10000", "100000", "1000000"})
+    private int catalogSize;
+
+    private AiService aiService;
+    private String requestInfoCompletion;
+    private String purchaseCompletion;
+    private String unknownCompletion;
+    private String fencedCompletion;
+
+    @Setup
+    public void setUp() {
+        ProductRepository productRepository = SyntheticData.productRepository(catalogSize);
+        ChatResponseCache responseCache = new ChatResponseCache(false, 1, Duration.ofMinutes(1));
+        FastPathClassifier fastPathClassifier = new FastPathClassifier(productRepository, false);
+        AiMetrics metrics = new AiMetrics(new SimpleMeterRegistry(), responseCache, fastPathClassifier);
+        LlmClient llmClient = new LlmClient(BENCHMARK_API_KEY);
+        aiService = new AiService(
+                llmClient,
+                new ChatBatcher(llmClient, metrics, false, 8, Duration.ofMillis(5)),
+                new CatalogPromptProvider(productRepository),
+                new CatalogRetriever(productRepository, true, 20, 2),
+                productRepository,
+                responseCache,
+                fastPathClassifier,
+                new PurchaseService(productRepository, SyntheticData.emptyPurchaseRepository(), 300),
+                metrics,
+                Runnable::run);
+
+        requestInfoCompletion = "{\n"
+                + "  \"message\": \"Estoy recuperando la información de precios y stock de los productos solicitados\",\n"
+                + "  \"requestType\": \"request_info\",\n"
+                + "  \"productCodes\": [\"" + SyntheticData.productCode(1) + "\", \"" + SyntheticData.productCode(2)
+                + "\", \"" + SyntheticData.productCode(3) + "\", \"" + SyntheticData.productCode(catalogSize / 2)
+                + "\", \"" + SyntheticData.productCode(catalogSize) + "\"]\n"
+                + "}";
+        purchaseCompletion = "{\n"
+                + "  \"message\": \"Estoy procesando tu pedido de compra\",\n"
+                + "  \"requestType\": \"purchase\",\n"
+                + "  \"items\": [\n"
+                + "    {\"name\": \"Perno Hexagonal 1/4\\\" x 2\\\" Acero Zincado\", \"quantity\": 100},\n"
+                + "    {\"name\": \"Tuerca Hexagonal 1/4\\\" Acero Zincado\", \"quantity\": 100},\n"
+                + "    {\"name\": \"Volanda Plana 1/4\\\" Acero Zincado\", \"quantity\": 200}\n"
+                + "  ]\n"
+                + "}";
+        unknownCompletion = "{\n"
+                + "  \"message\": \"¿Podrías indicarme qué producto necesitas?\",\n"
+                + "  \"requestType\": \"unknown\"\n"
+                + "}";
+        fencedCompletion = "Claro, esta es la información solicitada:\n```json\n" + requestInfoCompletion + "\n```";
+    }
+
+    @Benchmark
+    public ChatResponse parseRequestInfo() {
+        return aiService.parseAiResponse(requestInfoCompletion, "CLI-001");
+    }
+
+    @Benchmark
+    public ChatResponse parsePurchase() {
+        return aiService.parseAiResponse(purchaseCompletion, "CLI-001");
+    }
+
+    @Benchmark
+    public ChatResponse parseUnknown() {
+        return aiService.parseAiResponse(unknownCompletion, "CLI-001");
+    }
+
+    @Benchmark
+    public ChatResponse parseFencedRequestInfo() {
+        return aiService.parseAiResponse(fencedCompletion, "CLI-001");
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+@State(Scope.Benchmark)
+public class CatalogPromptBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int catalogSize;
+
+    private CatalogPromptProvider catalogPromptProvider;
+    private CatalogRetriever catalogRetriever;
+    private List<Product> products;
+    private CatalogPrompt catalogPrompt;
+    private List<Product> candidates;
+
+    @Setup
+    public void setUp() {
+        ProductRepository productRepository = SyntheticData.productRepository(catalogSize);
+        catalogPromptProvider = new CatalogPromptProvider(productRepository);
+        catalogRetriever = new CatalogRetriever(productRepository, true, 20, 2);
+        products = productRepository.findAll();
+        catalogPrompt = catalogPromptProvider.getCatalogPrompt();
+        candidates = catalogRetriever.selectCandidates("Precio del perno hexagonal 1/4\" x 2\" acero zincado");
+    }
+
+    @Benchmark
+    public String buildDetailedProductContext() {
+        return catalogPromptProvider.buildDetailedProductContext(products);
+    }
+
+    @Benchmark
+    public List<Product> selectCandidates() {
+        return catalogRetriever.selectCandidates("Precio del perno hexagonal 1/4\" x 2\" acero zincado");
+    }
+
+    @Benchmark
+    public String prunedSystemMessage() {
+        return catalogPrompt.getSystemMessage(candidates);
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Executor running the chat pipeline for /api/ai/chat.
+     * - "async" (default): a bounded pool, so servlet threads are released while the OpenAI call is in flight
+     *   and requests beyond the pool and queue capacity are rejected instead of piling up
+     * - "sync": runs the pipeline on the servlet thread, as before
+     */
+    @Bean
+    public TaskExecutor aiChatExecutor(
+            @Value("${ai.chat.execution-mode:async}") String executionMode,
+            @Value("${ai.chat.executor.core-size:16}") int coreSize,
+            @Value("${ai.chat.executor.max-size:64}") int maxSize,
+            @Value("${ai.chat.executor.queue-capacity:200}") int queueCapacity) {
+        switch (executionMode) {
+            case "sync":
+                return new SyncTaskExecutor();
+            case "async":
+                ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+                executor.setCorePoolSize(coreSize);
+                executor.setMaxPoolSize(maxSize);
+                executor.setQueueCapacity(queueCapacity);
+                executor.setThreadNamePrefix("ai-chat-");
+                executor.setWaitForTasksToCompleteOnShutdown(true);
+                executor.initialize();
+                return executor;
+            default:
+                throw new IllegalArgumentException("Unsupported ai.chat.execution-mode: " + executionMode + " (expected sync or async)");
+        }
+    }
+}
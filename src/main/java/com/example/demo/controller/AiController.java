@@ -3,45 +3,160 @@ package com.example.demo.controller;
 import com.example.demo.model.ChatRequest;
 import com.example.demo.model.ChatResponse;
 import com.example.demo.model.Client;
+import com.example.demo.service.AiMetrics;
 import com.example.demo.service.AiService;
+import com.example.demo.service.ChatRateLimiter;
 import com.example.demo.service.ClientService;
+import com.example.demo.service.RateLimitedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/ai")
 public class AiController {
+    private static final long STREAM_TIMEOUT_MILLIS = 120_000;
+
     private final AiService aiService;
     private final ClientService clientService;
+    private final AiMetrics metrics;
+    private final ChatRateLimiter rateLimiter;
 
-    public AiController(AiService aiService, ClientService clientService) {
+    public AiController(AiService aiService, ClientService clientService, AiMetrics metrics, ChatRateLimiter rateLimiter) {
         this.aiService = aiService;
         this.clientService = clientService;
+        this.metrics = metrics;
+        this.rateLimiter = rateLimiter;
     }
 
     @PostMapping("/chat")
-    public ResponseEntity<ChatResponse> chat(@RequestBody ChatRequest request) {
+    public CompletableFuture<ResponseEntity<ChatResponse>> chat(@RequestBody ChatRequest request) {
         if (request == null || request.getMessage() == null || request.getMessage().trim().isEmpty()) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
         
         if (request.getCodigoCliente() == null || request.getCodigoCliente().trim().isEmpty()) {
-            return ResponseEntity.badRequest().build();
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
         }
         
         // Validate client existence
+        long start = System.nanoTime();
         Optional<Client> clientOpt = clientService.getClientByCodigoCliente(request.getCodigoCliente());
+        metrics.recordStage("client_lookup", System.nanoTime() - start);
         if (clientOpt.isEmpty()) {
-            return ResponseEntity.notFound().build();
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
         }
         
         Client client = clientOpt.get();
-        ChatResponse response = aiService.chat(request.getMessage(), client);
-        return ResponseEntity.ok(response);
+        // Over its limit, the request is refused before anything is queued
+        rateLimiter.acquire(client.getCodigoCliente());
+        // The servlet thread is released here; the response is written once the chat pipeline completes
+        return aiService.chatAsync(request.getMessage(), client)
+                .whenComplete((response, throwable) -> metrics.recordStage("total", System.nanoTime() - start))
+                .thenApply(ResponseEntity::ok)
+                .exceptionally(this::handleChatFailure);
+    }
+
+    /**
+     * Server-sent events variant of {@link #chat(ChatRequest)}: "message" events carry the response text
+     * as the completion tokens arrive, and a final "information" event carries the structured payload.
+     * When the response message ends up different from the text streamed (a purchase replaces it with its
+     * outcome, an unreadable completion with the not-understood message), a "final_message" event carrying
+     * the whole response message comes before "information", and replaces the streamed text.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> chatStream(@RequestBody ChatRequest request) {
+        if (request == null || request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (request.getCodigoCliente() == null || request.getCodigoCliente().trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        long start = System.nanoTime();
+        Optional<Client> clientOpt = clientService.getClientByCodigoCliente(request.getCodigoCliente());
+        metrics.recordStage("client_lookup", System.nanoTime() - start);
+        if (clientOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        rateLimiter.acquire(clientOpt.get().getCodigoCliente());
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        // Only appended to by the chat thread, and read once the pipeline completed
+        StringBuilder streamed = new StringBuilder();
+        aiService.chatStream(request.getMessage(), clientOpt.get(), text -> {
+                    streamed.append(text);
+                    send(emitter, "message", text);
+                })
+                .whenComplete((response, throwable) -> {
+                    metrics.recordStage("total", System.nanoTime() - start);
+                    if (throwable != null) {
+                        emitter.completeWithError(throwable);
+                        return;
+                    }
+                    try {
+                        String message = response.getResponseMessage();
+                        if (streamed.isEmpty()) {
+                            // The completion had no streamable message (e.g. it was not valid JSON)
+                            send(emitter, "message", message);
+                        } else if (message != null && !message.contentEquals(streamed)) {
+                            send(emitter, "final_message", message);
+                        }
+                        send(emitter, "information", response.getInformation());
+                        emitter.complete();
+                    } catch (UncheckedIOException e) {
+                        emitter.completeWithError(e.getCause());
+                    }
+                });
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * 429 for a client over its rate limit, or when too many LLM calls are in flight.
+     */
+    @ExceptionHandler(RateLimitedException.class)
+    public ResponseEntity<Void> handleRateLimited(RateLimitedException e) {
+        long retryAfterSeconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .build();
+    }
+
+    private void send(SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data));
+        } catch (IOException e) {
+            // The client went away: abort the stream
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ResponseEntity<ChatResponse> handleChatFailure(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+        if (cause instanceof RejectedExecutionException) {
+            // The chat executor is saturated: fail fast rather than queue behind slow upstream calls
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        throw cause instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new CompletionException(cause);
     }
 }
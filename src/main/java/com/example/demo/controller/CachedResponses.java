@@ -0,0 +1,142 @@
+package com.example.demo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET for the read endpoints. The strong ETag of a response is derived from the version of the
+ * data behind it (plus a per-process epoch, since versions start over on every startup), so for a list a
+ * matching If-None-Match is answered with 304 before anything is looked up or serialized; a single resource
+ * is first checked to exist, since the ETag does not tell resources apart. Otherwise the response is
+ * served from its serialized JSON, kept per resource until the version changes, with the configured
+ * Cache-Control (app.http.cache-control).
+ */
+final class CachedResponses {
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+    private static final int MAX_ENTRIES = 1024;
+
+    private final ObjectMapper objectMapper;
+    private final String cacheControl;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    CachedResponses(ObjectMapper objectMapper, String cacheControl) {
+        this.objectMapper = objectMapper;
+        this.cacheControl = cacheControl;
+    }
+
+    /**
+     * Serialized {@code body} of the resource at the given data version, or 304 when the client has it already.
+     * The body must always exist, e.g. a list, so a matching ETag is answered without looking anything up.
+     */
+    ResponseEntity<byte[]> json(String resource, long version, String ifNoneMatch, Supplier<?> body) {
+        String etag = etag(version);
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        return ok(etag).contentType(MediaType.APPLICATION_JSON).body(serialized(resource, version, () -> Optional.of(body.get())));
+    }
+
+    /**
+     * Like {@link #json(String, long, String, Supplier)}, answering 404 when there is no body. The ETag is shared
+     * by every resource of the same data version, so a matching one (or *) is only answered with 304 once the
+     * resource is known to exist: either its JSON is cached for this version, or it is looked up.
+     */
+    ResponseEntity<byte[]> jsonIfPresent(String resource, long version, String ifNoneMatch, Supplier<? extends Optional<?>> body) {
+        String etag = etag(version);
+        byte[] json = serialized(resource, version, body);
+        if (json == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        return ok(etag).contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    String etag(long version) {
+        return "\"" + EPOCH + "-" + version + "\"";
+    }
+
+    boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // GET compares weakly: W/"x" matches "x"
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    <T> ResponseEntity<T> notModified(String etag) {
+        return withCaching(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag).build();
+    }
+
+    ResponseEntity.BodyBuilder ok(String etag) {
+        return withCaching(ResponseEntity.ok(), etag);
+    }
+
+    private ResponseEntity.BodyBuilder withCaching(ResponseEntity.BodyBuilder builder, String etag) {
+        builder.eTag(etag);
+        if (cacheControl != null && !cacheControl.isBlank()) {
+            builder.header(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        return builder;
+    }
+
+    /**
+     * JSON of the resource at the given version, serialized and kept if not already, or null when there is no body.
+     */
+    private byte[] serialized(String resource, long version, Supplier<? extends Optional<?>> body) {
+        synchronized (entries) {
+            Entry entry = entries.get(resource);
+            if (entry != null && entry.version == version) {
+                return entry.json;
+            }
+        }
+        Optional<?> value = body.get();
+        if (value.isEmpty()) {
+            return null;
+        }
+        byte[] json = serialize(resource, value.get());
+        synchronized (entries) {
+            entries.put(resource, new Entry(version, json));
+        }
+        return json;
+    }
+
+    private byte[] serialize(String resource, Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + resource, e);
+        }
+    }
+
+    private static final class Entry {
+        private final long version;
+        private final byte[] json;
+
+        private Entry(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
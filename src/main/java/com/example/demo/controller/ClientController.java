@@ -1,12 +1,18 @@
 package com.example.demo.controller;
 
-import com.example.demo.model.Client;
 import com.example.demo.service.ClientService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -14,33 +20,65 @@ import java.util.List;
 @RequestMapping("/clients")
 public class ClientController {
     private final ClientService clientService;
+    private final ListResponses listResponses;
+    private final CachedResponses cachedResponses;
 
-    public ClientController(ClientService clientService) {
+    public ClientController(
+            ClientService clientService,
+            ObjectMapper objectMapper,
+            @Value("${app.http.cache-control:no-cache}") String cacheControl) {
         this.clientService = clientService;
+        this.listResponses = new ListResponses(objectMapper);
+        this.cachedResponses = new CachedResponses(objectMapper, cacheControl);
     }
 
+    /**
+     * Clients in file order, optionally paginated (offset, limit) and projected onto some of their properties
+     * (fields=codigoCliente,nombreCompleto). See {@link ListResponses}. Pages are streamed rather than cached,
+     * but carry the ETag of the client data, so an unchanged page is answered with 304.
+     */
     @GetMapping
-    public ResponseEntity<List<Client>> getAllClients() {
-        List<Client> clients = clientService.getAllClients();
-        return ResponseEntity.ok(clients);
+    public ResponseEntity<List<?>> getAllClients(
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = cachedResponses.etag(clientService.getDataVersion());
+        if (cachedResponses.matches(ifNoneMatch, etag)) {
+            return cachedResponses.notModified(etag);
+        }
+        return listResponses.page(clientService.getAllClients(), offset, limit, fields, cachedResponses.ok(etag));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllClients(
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return listResponses.stream(clientService.getAllClients(), offset, limit, fields);
     }
 
     @GetMapping("/{codigoCliente}")
-    public ResponseEntity<Client> getClientByCodigoCliente(@PathVariable String codigoCliente) {
-        return clientService.getClientByCodigoCliente(codigoCliente)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<byte[]> getClientByCodigoCliente(
+            @PathVariable String codigoCliente,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return cachedResponses.jsonIfPresent("clients/" + codigoCliente, clientService.getDataVersion(), ifNoneMatch,
+                () -> clientService.getClientByCodigoCliente(codigoCliente));
     }
 
     @GetMapping("/distrito/{distrito}")
-    public ResponseEntity<List<Client>> getClientsByDistrito(@PathVariable String distrito) {
-        List<Client> clients = clientService.getClientsByDistrito(distrito);
-        return ResponseEntity.ok(clients);
+    public ResponseEntity<byte[]> getClientsByDistrito(
+            @PathVariable String distrito,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return cachedResponses.json("clients/distrito/" + distrito, clientService.getDataVersion(), ifNoneMatch,
+                () -> clientService.getClientsByDistrito(distrito));
     }
 
     @GetMapping("/ciudad/{ciudad}")
-    public ResponseEntity<List<Client>> getClientsByCiudad(@PathVariable String ciudad) {
-        List<Client> clients = clientService.getClientsByCiudad(ciudad);
-        return ResponseEntity.ok(clients);
+    public ResponseEntity<byte[]> getClientsByCiudad(
+            @PathVariable String ciudad,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return cachedResponses.json("clients/ciudad/" + ciudad, clientService.getDataVersion(), ifNoneMatch,
+                () -> clientService.getClientsByCiudad(ciudad));
     }
 }
@@ -2,11 +2,15 @@ package com.example.demo.controller;
 
 import com.example.demo.model.CompletedPurchase;
 import com.example.demo.service.CompletedPurchaseService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -14,15 +18,30 @@ import java.util.List;
 @RequestMapping("/purchases")
 public class CompletedPurchaseController {
     private final CompletedPurchaseService purchaseService;
+    private final ListResponses listResponses;
 
-    public CompletedPurchaseController(CompletedPurchaseService purchaseService) {
+    public CompletedPurchaseController(CompletedPurchaseService purchaseService, ObjectMapper objectMapper) {
         this.purchaseService = purchaseService;
+        this.listResponses = new ListResponses(objectMapper);
     }
 
+    /**
+     * Purchases in the order they were recorded, optionally paginated and projected like the clients list.
+     */
     @GetMapping
-    public ResponseEntity<List<CompletedPurchase>> getAllPurchases() {
-        List<CompletedPurchase> purchases = purchaseService.getAllPurchases();
-        return ResponseEntity.ok(purchases);
+    public ResponseEntity<List<?>> getAllPurchases(
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return listResponses.page(purchaseService.getAllPurchases(), offset, limit, fields);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPurchases(
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return listResponses.stream(purchaseService.getAllPurchases(), offset, limit, fields);
     }
 
     @GetMapping("/{codigoCompra}")
@@ -33,8 +52,20 @@ public class CompletedPurchaseController {
     }
 
     @GetMapping("/client/{codigoCliente}")
-    public ResponseEntity<List<CompletedPurchase>> getPurchasesByCodigoCliente(@PathVariable String codigoCliente) {
-        List<CompletedPurchase> purchases = purchaseService.getPurchasesByCodigoCliente(codigoCliente);
-        return ResponseEntity.ok(purchases);
+    public ResponseEntity<List<?>> getPurchasesByCodigoCliente(
+            @PathVariable String codigoCliente,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return listResponses.page(purchaseService.getPurchasesByCodigoCliente(codigoCliente), offset, limit, fields);
+    }
+
+    @GetMapping(value = "/client/{codigoCliente}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPurchasesByCodigoCliente(
+            @PathVariable String codigoCliente,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return listResponses.stream(purchaseService.getPurchasesByCodigoCliente(codigoCliente), offset, limit, fields);
     }
 }
@@ -0,0 +1,141 @@
+package com.example.demo.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.AbstractList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Offset pagination, field projection and JSON lines streaming for the list endpoints.
+ *
+ * A page is a view over the list the repository returns, never a copy, and Jackson writes its elements
+ * to the response one at a time; with fields=, each element is projected onto the requested properties
+ * only as it is written. Without a limit the page runs to the end of the list, as before pagination.
+ * X-Total-Count carries the size of the whole list and a Link header (rel="next") the next page.
+ * With Accept: application/x-ndjson every element is written as a JSON line straight to the output stream.
+ */
+final class ListResponses {
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final int MAX_LIMIT = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
+
+    ListResponses(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    ResponseEntity<List<?>> page(List<?> items, int offset, Integer limit, String fields) {
+        return page(items, offset, limit, fields, ResponseEntity.ok());
+    }
+
+    /**
+     * Page completing the given 200 response, e.g. one already carrying caching headers.
+     */
+    ResponseEntity<List<?>> page(List<?> items, int offset, Integer limit, String fields, ResponseEntity.BodyBuilder ok) {
+        if (!isValid(offset, limit)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<?> page = project(slice(items, offset, limit), fields);
+        return withPageHeaders(ok, items.size(), offset, page.size()).body(page);
+    }
+
+    ResponseEntity<StreamingResponseBody> stream(List<?> items, int offset, Integer limit, String fields) {
+        if (!isValid(offset, limit)) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<?> page = project(slice(items, offset, limit), fields);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                for (Object item : page) {
+                    lineWriter.writeValue(generator, item);
+                }
+                generator.writeRaw('\n');
+            }
+        };
+        return withPageHeaders(ResponseEntity.ok(), items.size(), offset, page.size())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private static boolean isValid(int offset, Integer limit) {
+        return offset >= 0 && (limit == null || limit > 0);
+    }
+
+    private static List<?> slice(List<?> items, int offset, Integer limit) {
+        int from = Math.min(offset, items.size());
+        int to = limit == null ? items.size() : (int) Math.min((long) from + Math.min(limit, MAX_LIMIT), items.size());
+        return items.subList(from, to);
+    }
+
+    private List<?> project(List<?> items, String fields) {
+        Set<String> selected = parseFields(fields);
+        if (selected.isEmpty()) {
+            return items;
+        }
+        return new Projection(items, selected);
+    }
+
+    private static Set<String> parseFields(String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        if (fields != null) {
+            for (String field : fields.split(",")) {
+                if (!field.isBlank()) {
+                    selected.add(field.trim());
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static ResponseEntity.BodyBuilder withPageHeaders(ResponseEntity.BodyBuilder builder, int total, int offset, int pageSize) {
+        builder.header(TOTAL_COUNT_HEADER, String.valueOf(total));
+        long next = (long) Math.min(offset, total) + pageSize;
+        if (next < total) {
+            String nextPage = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("offset", next)
+                    .toUriString();
+            builder.header("Link", "<" + nextPage + ">; rel=\"next\"");
+        }
+        return builder;
+    }
+
+    /**
+     * Elements reduced to the selected properties, converted one at a time when read.
+     */
+    private final class Projection extends AbstractList<ObjectNode> implements RandomAccess {
+        private final List<?> items;
+        private final Set<String> fields;
+
+        private Projection(List<?> items, Set<String> fields) {
+            this.items = items;
+            this.fields = fields;
+        }
+
+        @Override
+        public ObjectNode get(int index) {
+            ObjectNode node = objectMapper.valueToTree(items.get(index));
+            node.retain(fields);
+            return node;
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+    }
+}
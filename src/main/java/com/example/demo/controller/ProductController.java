@@ -1,27 +1,38 @@
 package com.example.demo.controller;
 
-import com.example.demo.model.Product;
 import com.example.demo.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/products")
 public class ProductController {
     private final ProductService productService;
+    private final CachedResponses cachedResponses;
 
-    public ProductController(ProductService productService) {
+    public ProductController(
+            ProductService productService,
+            ObjectMapper objectMapper,
+            @Value("${app.http.cache-control:no-cache}") String cacheControl) {
         this.productService = productService;
+        this.cachedResponses = new CachedResponses(objectMapper, cacheControl);
     }
 
+    /**
+     * Products of a type, with an ETag following the catalog version (stock changes included); see {@link CachedResponses}.
+     */
     @GetMapping("/{tipoProducto}")
-    public ResponseEntity<List<Product>> getProductsByType(@PathVariable String tipoProducto) {
-        List<Product> products = productService.getProductsByType(tipoProducto);
-        return ResponseEntity.ok(products);
+    public ResponseEntity<byte[]> getProductsByType(
+            @PathVariable String tipoProducto,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return cachedResponses.json("products/" + tipoProducto, productService.getDataVersion(), ifNoneMatch,
+                () -> productService.getProductsByType(tipoProducto));
     }
 }
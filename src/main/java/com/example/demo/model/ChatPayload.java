@@ -0,0 +1,143 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.List;
+
+/**
+ * The "information" of a {@link ChatResponse}: what kind of answer it is and the data for it, serialized as
+ * {"type": ..., "response": ...} by {@link ChatPayloadSerializer}.
+ */
+@JsonSerialize(using = ChatPayloadSerializer.class)
+public sealed interface ChatPayload {
+
+    String getType();
+
+    Object getResponse();
+
+    /**
+     * Price and stock of the products the request was about.
+     */
+    final class RequestInfo implements ChatPayload {
+        private final List<Product> products;
+
+        public RequestInfo(List<Product> products) {
+            this.products = products;
+        }
+
+        @Override
+        public String getType() {
+            return "request_info";
+        }
+
+        @Override
+        public List<Product> getResponse() {
+            return products;
+        }
+    }
+
+    /**
+     * The items a purchase request asked for, before the purchase is executed.
+     */
+    final class PurchaseOrder implements ChatPayload {
+        private final List<OrderLine> lines;
+
+        public PurchaseOrder(List<OrderLine> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public String getType() {
+            return "purchase";
+        }
+
+        @Override
+        public List<OrderLine> getResponse() {
+            return lines;
+        }
+    }
+
+    /**
+     * The purchase recorded for the request.
+     */
+    final class Purchase implements ChatPayload {
+        private final CompletedPurchase purchase;
+
+        public Purchase(CompletedPurchase purchase) {
+            this.purchase = purchase;
+        }
+
+        @Override
+        public String getType() {
+            return "purchase";
+        }
+
+        @Override
+        public CompletedPurchase getResponse() {
+            return purchase;
+        }
+    }
+
+    /**
+     * Why the purchase the request asked for was not recorded.
+     */
+    final class PurchaseRejected implements ChatPayload {
+        private final String reason;
+
+        public PurchaseRejected(String reason) {
+            this.reason = reason;
+        }
+
+        @Override
+        public String getType() {
+            return "purchase_rejected";
+        }
+
+        @Override
+        public String getResponse() {
+            return reason;
+        }
+    }
+
+    /**
+     * A request that was not understood, answered with a message only.
+     */
+    final class Unknown implements ChatPayload {
+        private final String message;
+
+        public Unknown(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String getType() {
+            return "unknown";
+        }
+
+        @Override
+        public String getResponse() {
+            return message;
+        }
+    }
+
+    /**
+     * An item of a {@link PurchaseOrder}: a product name as the user wrote it and a quantity.
+     */
+    final class OrderLine {
+        private final String name;
+        private final int quantity;
+
+        public OrderLine(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+    }
+}
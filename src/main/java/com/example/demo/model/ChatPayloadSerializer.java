@@ -0,0 +1,175 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes a {@link ChatPayload} straight to the generator, without the reflection and runtime type lookups a
+ * {@code Map<String, Object>} goes through. Field names and type values are pre-encoded, and each product is
+ * written from a JSON fragment rendered the first time it is sent and reused for as long as the product is
+ * unchanged. The JSON is the same as Jackson's default for the map and beans it replaces.
+ */
+public final class ChatPayloadSerializer extends StdSerializer<ChatPayload> {
+    // Bounds the fragments kept for a large catalog; they are simply rendered again after a reset
+    private static final int MAX_PRODUCT_FRAGMENTS = 10_000;
+    private static final JsonFactory FRAGMENT_FACTORY = new JsonFactory();
+
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString RESPONSE = new SerializedString("response");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString QUANTITY = new SerializedString("quantity");
+    private static final SerializedString CODIGO_PRODUCTO = new SerializedString("codigoProducto");
+    private static final SerializedString TIPO_PRODUCTO = new SerializedString("tipoProducto");
+    private static final SerializedString NOMBRE_PRODUCTO = new SerializedString("nombreProducto");
+    private static final SerializedString CANTIDAD_STOCK = new SerializedString("cantidadStock");
+    private static final SerializedString PRECIO_UNITARIO = new SerializedString("precioUnitario");
+    private static final SerializedString PRECIO_X_MAYOR = new SerializedString("precioXMayor");
+
+    private static final SerializedString REQUEST_INFO = new SerializedString("request_info");
+    private static final SerializedString PURCHASE = new SerializedString("purchase");
+    private static final SerializedString PURCHASE_REJECTED = new SerializedString("purchase_rejected");
+    private static final SerializedString UNKNOWN = new SerializedString("unknown");
+
+    private final Map<String, ProductFragment> productFragments = new ConcurrentHashMap<>();
+
+    public ChatPayloadSerializer() {
+        super(ChatPayload.class);
+    }
+
+    @Override
+    public void serialize(ChatPayload payload, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject(payload);
+        if (payload instanceof ChatPayload.RequestInfo requestInfo) {
+            generator.writeFieldName(TYPE);
+            generator.writeString(REQUEST_INFO);
+            generator.writeFieldName(RESPONSE);
+            writeProducts(requestInfo, generator);
+        } else if (payload instanceof ChatPayload.PurchaseOrder order) {
+            generator.writeFieldName(TYPE);
+            generator.writeString(PURCHASE);
+            generator.writeFieldName(RESPONSE);
+            writeOrderLines(order, generator);
+        } else if (payload instanceof ChatPayload.Purchase purchase) {
+            generator.writeFieldName(TYPE);
+            generator.writeString(PURCHASE);
+            generator.writeFieldName(RESPONSE);
+            provider.defaultSerializeValue(purchase.getResponse(), generator);
+        } else {
+            generator.writeFieldName(TYPE);
+            generator.writeString(payload instanceof ChatPayload.PurchaseRejected ? PURCHASE_REJECTED : UNKNOWN);
+            generator.writeFieldName(RESPONSE);
+            generator.writeString((String) payload.getResponse());
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeProducts(ChatPayload.RequestInfo requestInfo, JsonGenerator generator) throws IOException {
+        if (requestInfo.getResponse() == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (Product product : requestInfo.getResponse()) {
+            if (product == null) {
+                generator.writeNull();
+            } else {
+                generator.writeRawValue(productFragment(product));
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeOrderLines(ChatPayload.PurchaseOrder order, JsonGenerator generator) throws IOException {
+        if (order.getResponse() == null) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartArray();
+        for (ChatPayload.OrderLine line : order.getResponse()) {
+            generator.writeStartObject();
+            generator.writeFieldName(NAME);
+            generator.writeString(line.getName());
+            generator.writeFieldName(QUANTITY);
+            generator.writeNumber(line.getQuantity());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private SerializableString productFragment(Product product) throws IOException {
+        String code = product.getCodigoProducto();
+        if (code == null) {
+            return renderProduct(product);
+        }
+        ProductFragment fragment = productFragments.get(code);
+        if (fragment == null || !fragment.isFor(product)) {
+            fragment = new ProductFragment(product, renderProduct(product));
+            if (productFragments.size() >= MAX_PRODUCT_FRAGMENTS) {
+                productFragments.clear();
+            }
+            productFragments.put(code, fragment);
+        }
+        return fragment.json;
+    }
+
+    private static SerializableString renderProduct(Product product) throws IOException {
+        StringWriter json = new StringWriter(192);
+        try (JsonGenerator generator = FRAGMENT_FACTORY.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeFieldName(CODIGO_PRODUCTO);
+            generator.writeString(product.getCodigoProducto());
+            generator.writeFieldName(TIPO_PRODUCTO);
+            generator.writeString(product.getTipoProducto());
+            generator.writeFieldName(NOMBRE_PRODUCTO);
+            generator.writeString(product.getNombreProducto());
+            generator.writeFieldName(CANTIDAD_STOCK);
+            generator.writeNumber(product.getCantidadStock());
+            generator.writeFieldName(PRECIO_UNITARIO);
+            generator.writeNumber(product.getPrecioUnitario());
+            generator.writeFieldName(PRECIO_X_MAYOR);
+            generator.writeNumber(product.getPrecioXMayor());
+            generator.writeEndObject();
+        }
+        return new SerializedString(json.toString());
+    }
+
+    /**
+     * A product's JSON with the values it was rendered from. Products are materialized again on every read
+     * of the catalog, so a fragment is matched on the values rather than on the instance.
+     */
+    private static final class ProductFragment {
+        private final String tipoProducto;
+        private final String nombreProducto;
+        private final int cantidadStock;
+        private final double precioUnitario;
+        private final double precioXMayor;
+        private final SerializableString json;
+
+        private ProductFragment(Product product, SerializableString json) {
+            this.tipoProducto = product.getTipoProducto();
+            this.nombreProducto = product.getNombreProducto();
+            this.cantidadStock = product.getCantidadStock();
+            this.precioUnitario = product.getPrecioUnitario();
+            this.precioXMayor = product.getPrecioXMayor();
+            this.json = json;
+        }
+
+        private boolean isFor(Product product) {
+            return cantidadStock == product.getCantidadStock()
+                    && Double.compare(precioUnitario, product.getPrecioUnitario()) == 0
+                    && Double.compare(precioXMayor, product.getPrecioXMayor()) == 0
+                    && Objects.equals(nombreProducto, product.getNombreProducto())
+                    && Objects.equals(tipoProducto, product.getTipoProducto());
+        }
+    }
+}
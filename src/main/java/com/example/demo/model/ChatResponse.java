@@ -1,16 +1,14 @@
 package com.example.demo.model;
 
-import java.util.Map;
-
 public class ChatResponse {
     private String client;
     private String responseMessage;
-    private Map<String, Object> information;
+    private ChatPayload information;
 
     public ChatResponse() {
     }
 
-    public ChatResponse(String client, String responseMessage, Map<String, Object> information) {
+    public ChatResponse(String client, String responseMessage, ChatPayload information) {
         this.client = client;
         this.responseMessage = responseMessage;
         this.information = information;
@@ -32,11 +30,11 @@ public class ChatResponse {
         this.responseMessage = responseMessage;
     }
 
-    public Map<String, Object> getInformation() {
+    public ChatPayload getInformation() {
         return information;
     }
 
-    public void setInformation(Map<String, Object> information) {
+    public void setInformation(ChatPayload information) {
         this.information = information;
     }
 }
@@ -1,57 +1,162 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Client;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Repository;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Repository
 public class ClientRepository {
-    private final List<Client> clients = new ArrayList<>();
+    private static final String CLIENTS_FILE = "database/clients.json";
+    // Snapshot record: the seven string fields of a client
+    private static final int RECORD_WIDTH = 7 * 4;
+    private static final int CODE = 0;
+    private static final int DISTRICT = 12;
+    private static final int CITY = 16;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DatasetLoader datasetLoader;
+    private final CompletableFuture<Clients> initialLoad;
+    private final AtomicLong version = new AtomicLong(1);
+    private volatile Clients clients;
 
-    public ClientRepository() {
-        loadClientsFromJson();
+    public ClientRepository(DatasetLoader datasetLoader, DatasetWatcher datasetWatcher) {
+        // Imported (or mapped from their snapshot) in the background; the clients are published once they are indexed
+        this.datasetLoader = datasetLoader;
+        this.initialLoad = loadClients(false);
+        datasetWatcher.register(CLIENTS_FILE, this::reload);
     }
 
-    private void loadClientsFromJson() {
-        try {
-            ClassPathResource resource = new ClassPathResource("database/clients.json");
-            try (InputStream inputStream = resource.getInputStream()) {
-                List<Client> loadedClients = objectMapper.readValue(inputStream, new TypeReference<List<Client>>() {});
-                clients.addAll(loadedClients);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load clients from database/clients.json", e);
-        }
+    /**
+     * Repository over a fixed list of clients instead of the JSON file, e.g. the synthetic data of the benchmarks.
+     */
+    ClientRepository(List<Client> clients) {
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(RECORD_WIDTH);
+        clients.forEach(client -> write(client, writer));
+        this.datasetLoader = null;
+        this.initialLoad = CompletableFuture.completedFuture(new Clients(writer.toSnapshot()));
+    }
+
+    /**
+     * Reload the clients from the JSON file and swap in the new set together with its indexes; readers see
+     * either the previous set or the new one and never lock. When the file fails to load, the current set is kept.
+     */
+    public synchronized void reload() {
+        clients = loadClients(true).join();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Version of the client data; it changes every time the clients are reloaded.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Load the clients, from their snapshot unless reloading: a reload always imports the JSON file.
+     */
+    private CompletableFuture<Clients> loadClients(boolean reloading) {
+        Supplier<CompletableFuture<SnapshotFile.Writer>> jsonImport = () -> datasetLoader.load("clients", CLIENTS_FILE, inputStream -> {
+            // Each client goes straight into the snapshot as it is read
+            SnapshotFile.Writer writer = new SnapshotFile.Writer(RECORD_WIDTH);
+            JsonArrayReader.forEach(objectMapper, inputStream, Client.class, client -> write(client, writer));
+            return writer;
+        });
+        CompletableFuture<SnapshotFile> snapshot = reloading
+                ? datasetLoader.reload("clients", List.of(CLIENTS_FILE), jsonImport)
+                : datasetLoader.load("clients", List.of(CLIENTS_FILE), jsonImport);
+        return snapshot.thenApply(Clients::new);
+    }
+
+    private static void write(Client client, SnapshotFile.Writer writer) {
+        writer.putString(client.getCodigoCliente())
+                .putString(client.getNombreCompleto())
+                .putString(client.getDireccion())
+                .putString(client.getDistrito())
+                .putString(client.getCiudad())
+                .putString(client.getTelefono())
+                .putString(client.getEmail())
+                .endRecord();
+    }
+
+    /**
+     * Current clients, waiting for the initial load if it is still in progress.
+     */
+    private Clients clients() {
+        Clients current = clients;
+        return current != null ? current : initialLoad.join();
     }
 
     public List<Client> findAll() {
-        return new ArrayList<>(clients);
+        return clients().records.asList();
     }
 
     public Optional<Client> findByCodigoCliente(String codigoCliente) {
-        return clients.stream()
-                .filter(client -> client.getCodigoCliente().equalsIgnoreCase(codigoCliente))
-                .findFirst();
+        Clients current = clients();
+        int record = current.byCodigoCliente.find(codigoCliente);
+        return record < 0 ? Optional.empty() : Optional.of(current.records.get(record));
     }
 
     public List<Client> findByDistrito(String distrito) {
-        return clients.stream()
-                .filter(client -> client.getDistrito().equalsIgnoreCase(distrito))
-                .toList();
+        return clients().find(clients().byDistrito, distrito);
     }
 
     public List<Client> findByCiudad(String ciudad) {
-        return clients.stream()
-                .filter(client -> client.getCiudad().equalsIgnoreCase(ciudad))
-                .toList();
+        return clients().find(clients().byCiudad, ciudad);
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Immutable set of loaded clients, read from the records of their snapshot, with a case-insensitive index
+     * on the code and case-folded hash indexes on the district and city holding record numbers.
+     */
+    private static final class Clients {
+        private final LazyRecords<Client> records;
+        private final CodeIndex byCodigoCliente;
+        private final Map<String, int[]> byDistrito;
+        private final Map<String, int[]> byCiudad;
+
+        private Clients(SnapshotFile snapshot) {
+            int size = snapshot.records();
+            this.records = new LazyRecords<>(size, record -> new Client(snapshot.getString(record, 0),
+                    snapshot.getString(record, 4), snapshot.getString(record, 8), snapshot.getString(record, 12),
+                    snapshot.getString(record, 16), snapshot.getString(record, 20), snapshot.getString(record, 24)));
+            this.byCodigoCliente = new CodeIndex(size, record -> snapshot.getString(record, CODE));
+            this.byDistrito = index(snapshot, DISTRICT);
+            this.byCiudad = index(snapshot, CITY);
+        }
+
+        private List<Client> find(Map<String, int[]> index, String value) {
+            int[] found = index.get(key(value));
+            return found == null ? List.of() : records.asList(found);
+        }
+
+        /**
+         * Record numbers by the case-folded value of a string field; each distinct value is decoded once.
+         */
+        private static Map<String, int[]> index(SnapshotFile snapshot, int offset) {
+            Map<Integer, String> keys = new HashMap<>();
+            Map<String, IntList> index = new HashMap<>();
+            for (int record = 0; record < snapshot.records(); record++) {
+                String key = keys.computeIfAbsent(snapshot.getInt(record, offset), id -> key(snapshot.string(id)));
+                index.computeIfAbsent(key, k -> new IntList()).add(record);
+            }
+            Map<String, int[]> frozen = new HashMap<>(index.size() * 4 / 3 + 1);
+            index.forEach((key, values) -> frozen.put(key, values.toArray()));
+            return Collections.unmodifiableMap(frozen);
+        }
     }
 }
@@ -0,0 +1,60 @@
+package com.example.demo.repository;
+
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * Case-insensitive index of the codes of a snapshot's entries (products, clients, purchases). Only the entry
+ * numbers are kept, in an open-addressing table; the codes stay in the snapshot and the candidates' codes are
+ * read from it when looking one up. When several entries have the same code, the first one is found.
+ */
+final class CodeIndex {
+    private final IntFunction<String> codeOf;
+    private final int[] slots;
+    private final int mask;
+
+    /**
+     * Index the entries 0 to {@code size - 1}, whose codes are read with {@code codeOf}; null codes are skipped.
+     */
+    CodeIndex(int size, IntFunction<String> codeOf) {
+        this.codeOf = codeOf;
+        int capacity = Integer.highestOneBit(Math.max(2, size) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int entry = 0; entry < size; entry++) {
+            String code = codeOf.apply(entry);
+            if (code == null) {
+                continue;
+            }
+            int slot = slotOf(code);
+            // Slots hold the entry number plus one, so 0 is free
+            while (slots[slot] != 0 && !codeOf.apply(slots[slot] - 1).equalsIgnoreCase(code)) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] == 0) {
+                slots[slot] = entry + 1;
+            }
+        }
+    }
+
+    /**
+     * Entry with the given code, compared case-insensitively, or -1.
+     */
+    int find(String code) {
+        if (code == null) {
+            return -1;
+        }
+        for (int slot = slotOf(code); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int entry = slots[slot] - 1;
+            if (code.equalsIgnoreCase(codeOf.apply(entry))) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int slotOf(String code) {
+        int hash = code.toLowerCase(Locale.ROOT).hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
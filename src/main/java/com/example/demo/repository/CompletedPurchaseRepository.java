@@ -1,51 +1,276 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.CompletedPurchase;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.example.demo.model.PurchaseItem;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Repository;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
 public class CompletedPurchaseRepository {
-    private final List<CompletedPurchase> purchases = new ArrayList<>();
+    private static final String PURCHASES_FILE = "database/completed-purchases.json";
+    // Snapshot record: purchase code, client code and name, date, total, item count, then the item's
+    // product code and name, quantity, unit price and subtotal
+    private static final int RECORD_WIDTH = 4 * 4 + 8 + 4 + 4 + 4 + 4 + 8 + 8;
+    private static final int CODE = 0;
+    private static final int CLIENT = 4;
+    private static final int ITEM_COUNT = 24;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PurchaseLog purchaseLog;
+    private final CompletableFuture<Purchases> purchases;
 
-    public CompletedPurchaseRepository() {
-        loadPurchasesFromJson();
+    public CompletedPurchaseRepository(DatasetLoader datasetLoader, PurchaseLog purchaseLog) {
+        // Imported (or mapped from their snapshot) in the background; the completed purchases are published once
+        // indexed, followed by the ones recorded through the application, which the purchase log recovered
+        this.purchaseLog = purchaseLog;
+        this.purchases = datasetLoader.load("completed purchases", List.of(PURCHASES_FILE), () -> importPurchases(datasetLoader))
+                .thenApply(snapshot -> {
+                    Purchases loaded = new Purchases(snapshot);
+                    purchaseLog.getRecoveredPurchases().forEach(loaded::append);
+                    return loaded;
+                });
     }
 
-    private void loadPurchasesFromJson() {
-        try {
-            ClassPathResource resource = new ClassPathResource("database/completed-purchases.json");
-            try (InputStream inputStream = resource.getInputStream()) {
-                List<CompletedPurchase> loadedPurchases = objectMapper.readValue(inputStream, new TypeReference<List<CompletedPurchase>>() {});
-                purchases.addAll(loadedPurchases);
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load completed purchases from database/completed-purchases.json", e);
-        }
+    private CompletableFuture<SnapshotFile.Writer> importPurchases(DatasetLoader datasetLoader) {
+        return datasetLoader.load("completed purchases", PURCHASES_FILE, inputStream -> {
+            // Each purchase goes straight into the snapshot as it is read
+            SnapshotFile.Writer writer = new SnapshotFile.Writer(RECORD_WIDTH);
+            JsonArrayReader.forEach(objectMapper, inputStream, CompletedPurchase.class, purchase -> write(purchase, writer));
+            return writer;
+        });
+    }
+
+    /**
+     * Repository over a fixed list of purchases instead of the JSON file, e.g. the synthetic data of the benchmarks.
+     */
+    CompletedPurchaseRepository(List<CompletedPurchase> purchases) {
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(RECORD_WIDTH);
+        purchases.forEach(purchase -> write(purchase, writer));
+        this.purchaseLog = new PurchaseLog("", 0);
+        this.purchases = CompletableFuture.completedFuture(new Purchases(writer.toSnapshot()));
+    }
+
+    /**
+     * Loaded completed purchases, waiting for the load if it is still in progress.
+     */
+    private Purchases purchases() {
+        return purchases.join();
     }
 
     public List<CompletedPurchase> findAll() {
-        return new ArrayList<>(purchases);
+        return purchases().all();
     }
 
     public Optional<CompletedPurchase> findByCodigoCompra(String codigoCompra) {
-        return purchases.stream()
-                .filter(purchase -> purchase.getCodigoCompra().equalsIgnoreCase(codigoCompra))
-                .findFirst();
+        return Optional.ofNullable(purchases().findByCodigoCompra(codigoCompra));
     }
 
     public List<CompletedPurchase> findByCodigoCliente(String codigoCliente) {
-        return purchases.stream()
-                .filter(purchase -> purchase.getCodigoCliente().equalsIgnoreCase(codigoCliente))
-                .toList();
+        return purchases().findByCodigoCliente(codigoCliente);
+    }
+
+    /**
+     * Record a new purchase, assigning it the next purchase code (COMP-021, COMP-022...). The purchase is
+     * written to the purchase log and becomes visible once it is durable; when the log cannot be written,
+     * the purchase is not recorded and the exception is thrown.
+     */
+    public CompletedPurchase save(CompletedPurchase purchase) {
+        Purchases current = purchases();
+        purchase.setCodigoCompra(current.nextCodigoCompra());
+        // Wait outside of any lock, so concurrent purchases share the log's fsync
+        purchaseLog.appendPurchase(purchase).join();
+        return current.append(purchase);
+    }
+
+    /**
+     * One snapshot record per purchase item, each carrying its purchase's fields (stored once in the string
+     * table) and the purchase's item count; a purchase without items takes a single record with no item.
+     */
+    private static void write(CompletedPurchase purchase, SnapshotFile.Writer writer) {
+        List<PurchaseItem> items = purchase.getProductos() == null ? List.of() : purchase.getProductos();
+        int records = Math.max(1, items.size());
+        for (int i = 0; i < records; i++) {
+            PurchaseItem item = i < items.size() ? items.get(i) : new PurchaseItem();
+            writer.putString(purchase.getCodigoCompra())
+                    .putString(purchase.getCodigoCliente())
+                    .putString(purchase.getNombreCliente())
+                    .putString(purchase.getFecha())
+                    .putDouble(purchase.getMontoTotal())
+                    .putInt(items.size())
+                    .putString(item.getCodigoProducto())
+                    .putString(item.getNombreProducto())
+                    .putInt(item.getCantidad())
+                    .putDouble(item.getPrecioUnitario())
+                    .putDouble(item.getSubtotal())
+                    .endRecord();
+        }
+    }
+
+    /**
+     * The purchase whose first record is the given one, with its items from that record on.
+     */
+    private static CompletedPurchase read(SnapshotFile snapshot, int record) {
+        int itemCount = snapshot.getInt(record, ITEM_COUNT);
+        List<PurchaseItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            int itemRecord = record + i;
+            items.add(new PurchaseItem(snapshot.getString(itemRecord, 28), snapshot.getString(itemRecord, 32),
+                    snapshot.getInt(itemRecord, 36), snapshot.getDouble(itemRecord, 40), snapshot.getDouble(itemRecord, 48)));
+        }
+        return new CompletedPurchase(snapshot.getString(record, CODE), snapshot.getString(record, CLIENT),
+                snapshot.getString(record, 8), snapshot.getString(record, 12), items, snapshot.getDouble(record, 16));
+    }
+
+    private static String key(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Purchases loaded from the file plus the ones recorded since. The loaded purchases are read from the records
+     * of their snapshot, with a case-insensitive index on the purchase code and a case-folded hash index on the
+     * client code holding purchase numbers. Recorded ones are appended by a single writer at a time, and their
+     * per-client lists are replaced rather than modified, so lookups never see a list being changed.
+     */
+    private static final class Purchases {
+        private final LazyRecords<CompletedPurchase> loaded;
+        private final CodeIndex loadedByCodigoCompra;
+        private final Map<String, int[]> loadedByCodigoCliente;
+        private final List<CompletedPurchase> appended = new ArrayList<>();
+        private final Map<String, CompletedPurchase> appendedByCodigoCompra = new ConcurrentHashMap<>();
+        private final Map<String, List<CompletedPurchase>> appendedByCodigoCliente = new ConcurrentHashMap<>();
+        private int lastSequence;
+
+        private Purchases(SnapshotFile snapshot) {
+            IntList firstRecords = new IntList();
+            Map<Integer, String> clientKeys = new HashMap<>();
+            Map<String, IntList> byCodigoCliente = new HashMap<>();
+            int record = 0;
+            while (record < snapshot.records()) {
+                int purchase = firstRecords.size();
+                firstRecords.add(record);
+                lastSequence = Math.max(lastSequence, sequenceOf(snapshot.getString(record, CODE)));
+                String clientKey = clientKeys.computeIfAbsent(snapshot.getInt(record, CLIENT), id -> key(snapshot.string(id)));
+                byCodigoCliente.computeIfAbsent(clientKey, k -> new IntList()).add(purchase);
+                record += Math.max(1, snapshot.getInt(record, ITEM_COUNT));
+            }
+            int[] starts = firstRecords.toArray();
+            this.loaded = new LazyRecords<>(starts.length, purchase -> read(snapshot, starts[purchase]));
+            this.loadedByCodigoCompra = new CodeIndex(starts.length, purchase -> snapshot.getString(starts[purchase], CODE));
+            Map<String, int[]> frozen = new HashMap<>(byCodigoCliente.size() * 4 / 3 + 1);
+            byCodigoCliente.forEach((key, purchases) -> frozen.put(key, purchases.toArray()));
+            this.loadedByCodigoCliente = frozen;
+        }
+
+        private CompletedPurchase findByCodigoCompra(String codigoCompra) {
+            int purchase = loadedByCodigoCompra.find(codigoCompra);
+            return purchase >= 0 ? loaded.get(purchase) : appendedByCodigoCompra.get(key(codigoCompra));
+        }
+
+        private List<CompletedPurchase> findByCodigoCliente(String codigoCliente) {
+            int[] found = loadedByCodigoCliente.get(key(codigoCliente));
+            List<CompletedPurchase> recorded = appendedByCodigoCliente.get(key(codigoCliente));
+            if (recorded == null) {
+                return found == null ? List.of() : loaded.asList(found);
+            }
+            if (found == null) {
+                return recorded;
+            }
+            List<CompletedPurchase> all = new ArrayList<>(found.length + recorded.size());
+            all.addAll(loaded.asList(found));
+            all.addAll(recorded);
+            return Collections.unmodifiableList(all);
+        }
+
+        /**
+         * Read-only view of the loaded purchases followed by the ones recorded so far; nothing is copied,
+         * and purchases recorded afterwards are not part of it.
+         */
+        private List<CompletedPurchase> all() {
+            int recorded;
+            synchronized (this) {
+                recorded = appended.size();
+            }
+            if (recorded == 0) {
+                return loaded.asList();
+            }
+            return new AllPurchases(loaded.size() + recorded);
+        }
+
+        private synchronized CompletedPurchase appendedAt(int index) {
+            return appended.get(index);
+        }
+
+        private synchronized String nextCodigoCompra() {
+            return String.format("COMP-%03d", ++lastSequence);
+        }
+
+        private synchronized CompletedPurchase append(CompletedPurchase purchase) {
+            appended.add(purchase);
+            appendedByCodigoCompra.putIfAbsent(key(purchase.getCodigoCompra()), purchase);
+            appendedByCodigoCliente.merge(key(purchase.getCodigoCliente()), List.of(purchase), (current, added) -> {
+                List<CompletedPurchase> updated = new ArrayList<>(current.size() + 1);
+                updated.addAll(current);
+                updated.addAll(added);
+                return Collections.unmodifiableList(updated);
+            });
+            lastSequence = Math.max(lastSequence, sequenceOf(purchase.getCodigoCompra()));
+            return purchase;
+        }
+
+        /**
+         * Number after the last '-' of a purchase code (COMP-021 -> 21), or 0 when it is not 1 to 9 digits.
+         * Called for every purchase loaded, so the digits are read in place.
+         */
+        private static int sequenceOf(String codigoCompra) {
+            if (codigoCompra == null) {
+                return 0;
+            }
+            int start = codigoCompra.lastIndexOf('-') + 1;
+            int length = codigoCompra.length() - start;
+            if (length < 1 || length > 9) {
+                return 0;
+            }
+            int sequence = 0;
+            for (int i = start; i < codigoCompra.length(); i++) {
+                char c = codigoCompra.charAt(i);
+                if (c < '0' || c > '9') {
+                    return 0;
+                }
+                sequence = sequence * 10 + (c - '0');
+            }
+            return sequence;
+        }
+
+        private final class AllPurchases extends AbstractList<CompletedPurchase> implements RandomAccess {
+            private final int size;
+
+            private AllPurchases(int size) {
+                this.size = size;
+            }
+
+            @Override
+            public CompletedPurchase get(int index) {
+                Objects.checkIndex(index, size);
+                return index < loaded.size() ? loaded.get(index) : appendedAt(index - loaded.size());
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        }
     }
 }
@@ -0,0 +1,259 @@
+package com.example.demo.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Parses the JSON datasets on a small bounded pool, so the repositories load their files in parallel
+ * with each other and with the rest of the application startup instead of one after another.
+ * A file present in app.data.external-dir (e.g. pernos.json) is read instead of the bundled classpath copy.
+ * Each repository submits its files from its constructor and publishes its data once all of its parts
+ * are ready. Once every singleton is created, startup waits for all the loads and fails if any file failed;
+ * the first failure also cancels the loads still pending.
+ *
+ * The repositories keep their data in a {@link SnapshotFile} and serve their lookups from its records. When
+ * app.data.snapshot-dir is set, the snapshot of a dataset is written there whenever the dataset is imported from
+ * JSON and mapped at startup instead of parsing the JSON, as long as it was built from the same source files.
+ * A reload always imports the JSON again, dropping the snapshot first, so a changed file is never served from
+ * a stale snapshot. Without a directory, or when it cannot be written, the snapshot is held on the heap.
+ */
+@Component
+public class DatasetLoader implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(DatasetLoader.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Path externalDir;
+    private final Path snapshotDir;
+    private final List<CompletableFuture<?>> pending = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    private volatile boolean started;
+
+    public DatasetLoader(
+            @Value("${app.data.loader-threads:4}") int threads,
+            @Value("${app.data.external-dir:}") String externalDir,
+            @Value("${app.data.snapshot-dir:}") String snapshotDir) {
+        this.externalDir = externalDir == null || externalDir.isBlank() ? null : Paths.get(externalDir);
+        this.snapshotDir = snapshotDir == null || snapshotDir.isBlank() ? null : Paths.get(snapshotDir);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "dataset-loader-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Idle loader threads go away after startup; reloads start them again
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Parse a dataset file on the loader pool. The future fails with a RuntimeException naming
+     * the dataset and the file when the file cannot be read or parsed.
+     */
+    public <T> CompletableFuture<T> load(String dataset, String resourcePath, DatasetParser<T> parser) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            Path externalFile = externalFile(resourcePath);
+            boolean external = externalFile != null;
+            try (InputStream inputStream = external
+                    ? Files.newInputStream(externalFile)
+                    : new ClassPathResource(resourcePath).getInputStream()) {
+                T result = parser.parse(inputStream);
+                logger.info("Loaded {} from {} in {} ms", dataset, external ? externalFile : resourcePath,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return result;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load " + dataset + " from " + (external ? externalFile : resourcePath), e);
+            }
+        }, executor);
+        return track(future);
+    }
+
+    /**
+     * Snapshot of a dataset: the one in the snapshot directory when it was built from the current source files,
+     * otherwise one imported from JSON with {@code jsonImport} and written to the directory for the next startup.
+     * A snapshot that cannot be read is ignored, and one that cannot be written is kept on the heap instead.
+     */
+    CompletableFuture<SnapshotFile> load(String dataset, List<String> resourcePaths,
+                                         Supplier<CompletableFuture<SnapshotFile.Writer>> jsonImport) {
+        return load(dataset, resourcePaths, jsonImport, false);
+    }
+
+    /**
+     * Snapshot of a dataset after its source files changed: the snapshot is deleted and the JSON imported with
+     * {@code jsonImport}, then written again. The file stamp is not trusted here, since a file rewritten within
+     * the same millisecond with the same size would keep it.
+     */
+    CompletableFuture<SnapshotFile> reload(String dataset, List<String> resourcePaths,
+                                           Supplier<CompletableFuture<SnapshotFile.Writer>> jsonImport) {
+        return load(dataset, resourcePaths, jsonImport, true);
+    }
+
+    private CompletableFuture<SnapshotFile> load(String dataset, List<String> resourcePaths,
+                                                 Supplier<CompletableFuture<SnapshotFile.Writer>> jsonImport, boolean reload) {
+        if (snapshotDir == null) {
+            return jsonImport.get().thenApply(SnapshotFile.Writer::toSnapshot);
+        }
+        Path snapshot = snapshotDir.resolve(dataset.replace(' ', '-') + ".snapshot");
+        long sourceStamp;
+        try {
+            sourceStamp = sourceStamp(resourcePaths);
+        } catch (IOException e) {
+            logger.warn("Cannot identify the source files of {}, not using a snapshot", dataset, e);
+            deleteSnapshot(snapshot);
+            return jsonImport.get().thenApply(SnapshotFile.Writer::toSnapshot);
+        }
+        CompletableFuture<SnapshotFile> future = CompletableFuture
+                .supplyAsync(() -> reload ? deleteSnapshot(snapshot) : openSnapshot(dataset, snapshot, sourceStamp), executor)
+                .thenCompose(mapped -> mapped != null
+                        ? CompletableFuture.completedFuture(mapped)
+                        : jsonImport.get().thenApply(writer -> writeSnapshot(snapshot, sourceStamp, writer)));
+        return track(future);
+    }
+
+    private SnapshotFile openSnapshot(String dataset, Path snapshot, long sourceStamp) {
+        long start = System.nanoTime();
+        try {
+            SnapshotFile file = SnapshotFile.open(snapshot, sourceStamp);
+            if (file != null) {
+                logger.info("Mapped {} from {} in {} ms", dataset, snapshot, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Ignoring unreadable snapshot {}", snapshot, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the imported records to the snapshot directory and map them from there, or keep them on the heap
+     * when the snapshot cannot be written.
+     */
+    private SnapshotFile writeSnapshot(Path snapshot, long sourceStamp, SnapshotFile.Writer writer) {
+        try {
+            Files.createDirectories(snapshot.getParent());
+            writer.writeTo(snapshot, sourceStamp);
+            SnapshotFile mapped = SnapshotFile.open(snapshot, sourceStamp);
+            if (mapped != null) {
+                return mapped;
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to write the snapshot {}", snapshot, e);
+        }
+        return writer.toSnapshot();
+    }
+
+    /**
+     * Delete the snapshot so that it is not mapped until it is written again; returns null, as nothing was mapped.
+     */
+    private static SnapshotFile deleteSnapshot(Path snapshot) {
+        try {
+            Files.deleteIfExists(snapshot);
+        } catch (IOException e) {
+            logger.warn("Failed to delete the snapshot {}", snapshot, e);
+        }
+        return null;
+    }
+
+    /**
+     * Identifies the files a dataset would be loaded from (external or bundled) by path, size and modification time.
+     */
+    private long sourceStamp(List<String> resourcePaths) throws IOException {
+        long stamp = 17;
+        for (String resourcePath : resourcePaths) {
+            Path externalFile = externalFile(resourcePath);
+            String source;
+            long size;
+            long modified;
+            if (externalFile != null) {
+                source = externalFile.toAbsolutePath().toString();
+                size = Files.size(externalFile);
+                modified = Files.getLastModifiedTime(externalFile).toMillis();
+            } else {
+                ClassPathResource resource = new ClassPathResource(resourcePath);
+                source = resourcePath;
+                size = resource.contentLength();
+                modified = resource.lastModified();
+            }
+            stamp = 31 * (31 * (31 * stamp + source.hashCode()) + size) + modified;
+        }
+        return stamp;
+    }
+
+    private Path externalFile(String resourcePath) {
+        Path externalFile = externalDir == null ? null : externalDir.resolve(fileName(resourcePath));
+        return externalFile != null && Files.isRegularFile(externalFile) ? externalFile : null;
+    }
+
+    private <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (started) {
+            // Reloads fail on their own: the caller keeps its current data
+            return future;
+        }
+        pending.add(future);
+        future.whenComplete((result, throwable) -> {
+            pending.remove(future);
+            if (throwable != null) {
+                firstFailure.compareAndSet(null, unwrap(throwable));
+                pending.forEach(other -> other.cancel(false));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Wait for the loads submitted while the singletons were created, failing the startup if any of them failed.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        started = true;
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        } catch (RuntimeException e) {
+            // Report the failure that caused the cancellations rather than one of the cancellations
+        }
+        Throwable failure = firstFailure.get();
+        if (failure != null) {
+            throw failure instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new IllegalStateException("Failed to load the datasets", failure);
+        }
+    }
+
+    /**
+     * Name of the file in app.data.external-dir overriding a classpath resource: "database/pernos.json" -> "pernos.json".
+     */
+    static String fileName(String resourcePath) {
+        return resourcePath.substring(resourcePath.lastIndexOf('/') + 1);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    /**
+     * Parses a whole dataset file into whatever the repository keeps.
+     */
+    @FunctionalInterface
+    public interface DatasetParser<T> {
+        T parse(InputStream inputStream) throws IOException;
+    }
+}
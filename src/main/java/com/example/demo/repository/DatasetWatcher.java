@@ -0,0 +1,127 @@
+package com.example.demo.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches app.data.external-dir, where the JSON datasets can be overridden, and runs the reload registered
+ * for a file when it is created, modified or deleted. Reloads run on the watcher thread once the directory has
+ * been quiet for the debounce period, so a file being copied in several writes is reloaded once. A reload that
+ * fails (e.g. the file is not valid JSON) is logged and the repository keeps serving its current snapshot.
+ * Does nothing when no external directory is configured.
+ */
+@Component
+public class DatasetWatcher implements SmartInitializingSingleton, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(DatasetWatcher.class);
+
+    private final Path externalDir;
+    private final Duration debounce;
+    private final Map<String, Runnable> reloadsByFileName = new ConcurrentHashMap<>();
+    private volatile WatchService watchService;
+
+    public DatasetWatcher(
+            @Value("${app.data.external-dir:}") String externalDir,
+            @Value("${app.data.watch.debounce:500ms}") Duration debounce) {
+        this.externalDir = externalDir == null || externalDir.isBlank() ? null : Paths.get(externalDir);
+        this.debounce = debounce;
+    }
+
+    /**
+     * Run the reload whenever the external copy of the resource changes. Registering the same Runnable
+     * for several files reloads once when several of them change together.
+     */
+    public void register(String resourcePath, Runnable reload) {
+        reloadsByFileName.put(DatasetLoader.fileName(resourcePath), reload);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Start watching once the initial loads are done, so they never race with a reload
+        if (externalDir == null) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            externalDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to watch " + externalDir, e);
+        }
+        Thread thread = new Thread(this::watch, "dataset-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching {} for dataset changes", externalDir);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                Set<Runnable> reloads = new LinkedHashSet<>();
+                collect(watchService.take(), reloads);
+                WatchKey key;
+                while ((key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, reloads);
+                }
+                reloads.forEach(this::runReload);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collect(WatchKey key, Set<Runnable> reloads) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // Events were lost: reload everything
+                reloads.addAll(reloadsByFileName.values());
+            } else {
+                Runnable reload = reloadsByFileName.get(event.context().toString());
+                if (reload != null) {
+                    reloads.add(reload);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    private void runReload(Runnable reload) {
+        try {
+            reload.run();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to reload a dataset from {}, keeping the current data", externalDir, e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.repository;
+
+import java.util.Arrays;
+
+/**
+ * Growing list of ints, for the record numbers of an index while it is built.
+ */
+final class IntList {
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Last value added; the list must not be empty.
+     */
+    int last() {
+        return values[size - 1];
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.repository;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Reads a JSON array of objects one element at a time with the streaming {@link JsonParser}, handing each
+ * bound element to a consumer. Unlike binding the whole array into a {@code List}, nothing but the element
+ * being read is held besides what the consumer keeps, so the loading overhead does not grow with the file.
+ */
+final class JsonArrayReader {
+
+    private JsonArrayReader() {
+    }
+
+    static <T> void forEach(ObjectMapper objectMapper, InputStream inputStream, Class<T> type, Consumer<? super T> consumer)
+            throws IOException {
+        ObjectReader reader = objectMapper.readerFor(type);
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON array of " + type.getSimpleName() + " objects");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                consumer.accept(reader.readValue(parser));
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected a JSON object or the end of the array but found " + token);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.repository;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Objects read from the entries of a snapshot (clients, purchases) the first time they are asked for, then kept,
+ * so a lookup returns the same instance every time and entries never read are never decoded.
+ */
+final class LazyRecords<T> {
+    private final IntFunction<T> read;
+    private final AtomicReferenceArray<T> objects;
+    private final List<T> all;
+
+    LazyRecords(int size, IntFunction<T> read) {
+        this.read = read;
+        this.objects = new AtomicReferenceArray<>(size);
+        this.all = new View(null, size);
+    }
+
+    int size() {
+        return objects.length();
+    }
+
+    T get(int entry) {
+        T object = objects.get(entry);
+        if (object == null) {
+            // Racing readers may both read the entry; only the first object is kept
+            object = read.apply(entry);
+            if (!objects.compareAndSet(entry, null, object)) {
+                object = objects.get(entry);
+            }
+        }
+        return object;
+    }
+
+    /**
+     * Read-only view of every entry, in order.
+     */
+    List<T> asList() {
+        return all;
+    }
+
+    /**
+     * Read-only view of the given entries, in the given order.
+     */
+    List<T> asList(int[] entries) {
+        return new View(entries, entries.length);
+    }
+
+    private final class View extends AbstractList<T> implements RandomAccess {
+        private final int[] entries;
+        private final int size;
+
+        private View(int[] entries, int size) {
+            this.entries = entries;
+            this.size = size;
+        }
+
+        @Override
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            return LazyRecords.this.get(entries == null ? index : entries[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
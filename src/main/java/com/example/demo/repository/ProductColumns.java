@@ -0,0 +1,190 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Product;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Column-oriented storage of one catalog snapshot. Each product is a row of the {@link SnapshotFile}: codes,
+ * names and prices are read from its records when a row is read, so they are never copied to the heap. The
+ * mutable stock is kept apart in an array initialized from the records, and the product type as a short id
+ * into a dictionary, since a catalog only has a handful of types. This avoids a Product object per SKU; rows
+ * are materialized into detached Product instances only when read, so callers can never modify the snapshot.
+ * Everything is immutable except the stock, which is only changed through compare-and-set reservations.
+ */
+final class ProductColumns {
+    // Snapshot record: code, name and type string ids, stock, unit and wholesale prices
+    static final int RECORD_WIDTH = 4 + 4 + 4 + 4 + 8 + 8;
+    private static final int CODE = 0;
+    private static final int NAME = 4;
+    private static final int TYPE = 8;
+    private static final int STOCK = 12;
+    private static final int UNIT_PRICE = 16;
+    private static final int WHOLESALE_PRICE = 24;
+
+    private final SnapshotFile records;
+    private final short[] types;
+    private final String[] typeDictionary;
+    private final AtomicIntegerArray stock;
+    private final CodeIndex rowsByCode;
+    private final List<Product> rows = new Rows();
+
+    /**
+     * Columns over the records of a snapshot written by {@link #write(List, SnapshotFile.Writer)}. Only the stock
+     * and the type ids are read up front; each type is decoded once per string id.
+     */
+    ProductColumns(SnapshotFile records) {
+        int size = records.records();
+        this.records = records;
+        this.types = new short[size];
+        int[] stock = new int[size];
+        Map<Integer, Short> typeIds = new HashMap<>();
+        TypeDictionary dictionary = new TypeDictionary();
+        for (int row = 0; row < size; row++) {
+            int stringId = records.getInt(row, TYPE);
+            types[row] = typeIds.computeIfAbsent(stringId, id -> dictionary.idOf(records.string(id)));
+            stock[row] = records.getInt(row, STOCK);
+        }
+        this.typeDictionary = dictionary.toArray();
+        this.stock = new AtomicIntegerArray(stock);
+        this.rowsByCode = new CodeIndex(size, row -> records.getString(row, CODE));
+    }
+
+    static ProductColumns of(List<Product> products) {
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(RECORD_WIDTH);
+        write(products, writer);
+        return new ProductColumns(writer.toSnapshot());
+    }
+
+    /**
+     * Write one snapshot record per product, in catalog order.
+     */
+    static void write(List<Product> products, SnapshotFile.Writer writer) {
+        for (Product product : products) {
+            writer.putString(product.getCodigoProducto())
+                    .putString(product.getNombreProducto())
+                    .putString(product.getTipoProducto())
+                    .putInt(product.getCantidadStock())
+                    .putDouble(product.getPrecioUnitario())
+                    .putDouble(product.getPrecioXMayor())
+                    .endRecord();
+        }
+    }
+
+    int size() {
+        return types.length;
+    }
+
+    Product get(int row) {
+        return new Product(records.getString(row, CODE), typeDictionary[types[row]], records.getString(row, NAME),
+                stock.get(row), records.getDouble(row, UNIT_PRICE), records.getDouble(row, WHOLESALE_PRICE));
+    }
+
+    /**
+     * Take {@code quantity} units of the row's stock if that many are available. Concurrent reservations
+     * of the same row retry on a compare-and-set, so the stock can never go below zero.
+     */
+    boolean tryReserve(int row, int quantity) {
+        while (true) {
+            int available = stock.get(row);
+            if (available < quantity) {
+                return false;
+            }
+            if (stock.compareAndSet(row, available, available - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give back units taken by {@link #tryReserve(int, int)}.
+     */
+    void release(int row, int quantity) {
+        stock.addAndGet(row, quantity);
+    }
+
+    /**
+     * Take units already sold out of the stock without checking it, stopping at zero.
+     */
+    void remove(int row, int quantity) {
+        stock.updateAndGet(row, available -> Math.max(0, available - quantity));
+    }
+
+    /**
+     * Read-only view of all the rows in catalog order. The columns are not copied into a list, but every
+     * {@code get} materializes a new Product for the row: callers iterating it should not keep the products.
+     */
+    List<Product> asList() {
+        return rows;
+    }
+
+    /**
+     * Row of the product with the given code, compared case-insensitively, or -1.
+     */
+    int rowOfCode(String codigoProducto) {
+        return rowsByCode.find(codigoProducto);
+    }
+
+    /**
+     * Products of the given type, compared case-insensitively, in catalog order. The type is resolved once
+     * against the dictionary, then matched by id.
+     */
+    List<Product> findByType(String tipoProducto) {
+        boolean[] matchingTypes = new boolean[typeDictionary.length];
+        boolean any = false;
+        for (int id = 0; id < typeDictionary.length; id++) {
+            matchingTypes[id] = typeDictionary[id] != null && typeDictionary[id].equalsIgnoreCase(tipoProducto);
+            any |= matchingTypes[id];
+        }
+        List<Product> result = new ArrayList<>();
+        if (!any) {
+            return result;
+        }
+        for (int row = 0; row < types.length; row++) {
+            if (matchingTypes[types[row]]) {
+                result.add(get(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Assigns the short ids of the product types in order of first appearance.
+     */
+    private static final class TypeDictionary {
+        private final Map<String, Short> ids = new HashMap<>();
+        private final List<String> types = new ArrayList<>();
+
+        private short idOf(String type) {
+            return ids.computeIfAbsent(type, t -> {
+                if (types.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many product types: " + types.size());
+                }
+                types.add(t);
+                return (short) (types.size() - 1);
+            });
+        }
+
+        private String[] toArray() {
+            return types.toArray(new String[0]);
+        }
+    }
+
+    private final class Rows extends AbstractList<Product> implements RandomAccess {
+        @Override
+        public Product get(int index) {
+            return ProductColumns.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return types.length;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Product;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable trigram index over the normalized product names of one catalog snapshot.
+ *
+ * A keyword matches a product when the product's normalized name contains it, wherever it starts or ends
+ * ("pernohex" and "4x2" both match "Perno Hexagonal 1/4\" x 2\""). Every run of three characters of a name
+ * maps to the sorted positions of the products containing it: a longer keyword is only checked against the
+ * products listed under its rarest trigram, and a shorter one matches every product listed under a trigram
+ * containing it.
+ */
+final class ProductNameIndex {
+    private static final int GRAM_LENGTH = 3;
+
+    private final List<Product> products;
+    private final String[] normalizedNames;
+    private final Map<String, int[]> names;
+    private final Map<String, int[]> grams;
+    private final int[] shortNames;
+
+    private ProductNameIndex(List<Product> products, String[] normalizedNames, Map<String, int[]> names,
+                             Map<String, int[]> grams, int[] shortNames) {
+        this.products = products;
+        this.normalizedNames = normalizedNames;
+        this.names = names;
+        this.grams = grams;
+        this.shortNames = shortNames;
+    }
+
+    static ProductNameIndex build(List<Product> products) {
+        String[] normalizedNames = new String[products.size()];
+        Map<String, IntList> names = new HashMap<>();
+        Map<String, IntList> grams = new HashMap<>();
+        IntList shortNames = new IntList();
+        for (int position = 0; position < products.size(); position++) {
+            String name = ProductRepository.normalizeKeyword(products.get(position).getNombreProducto());
+            normalizedNames[position] = name;
+            addPosting(names, name, position);
+            if (name.length() < GRAM_LENGTH) {
+                shortNames.add(position);
+            }
+            for (int start = 0; start + GRAM_LENGTH <= name.length(); start++) {
+                addPosting(grams, name.substring(start, start + GRAM_LENGTH), position);
+            }
+        }
+        // The products are an immutable snapshot (the catalog columns): keep the view rather than copying it
+        return new ProductNameIndex(products, normalizedNames, toArrays(names), toArrays(grams), shortNames.toArray());
+    }
+
+    /**
+     * Products whose whole normalized name equals the given one, in catalog order.
+     */
+    List<Product> findByName(String normalizedName) {
+        int[] positions = names.get(normalizedName);
+        if (positions == null) {
+            return List.of();
+        }
+        List<Product> result = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            result.add(products.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Products whose normalized name contains any of the already normalized keywords, in catalog order.
+     */
+    List<Product> findAny(List<String> normalizedKeywords) {
+        BitSet matches = new BitSet(products.size());
+        for (String keyword : normalizedKeywords) {
+            if (keyword.isEmpty()) {
+                continue;
+            }
+            if (keyword.length() >= GRAM_LENGTH) {
+                int[] candidates = rarestGramPostings(keyword);
+                for (int position : candidates) {
+                    if (normalizedNames[position].contains(keyword)) {
+                        matches.set(position);
+                    }
+                }
+                continue;
+            }
+            // Any name of at least three characters containing the keyword has a trigram containing it
+            grams.forEach((gram, positions) -> {
+                if (gram.contains(keyword)) {
+                    set(matches, positions);
+                }
+            });
+            for (int position : shortNames) {
+                if (normalizedNames[position].contains(keyword)) {
+                    matches.set(position);
+                }
+            }
+        }
+
+        List<Product> result = new ArrayList<>(matches.cardinality());
+        for (int position = matches.nextSetBit(0); position >= 0; position = matches.nextSetBit(position + 1)) {
+            result.add(products.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Positions of the products containing the least common trigram of the keyword, which include every
+     * product containing the keyword; empty as soon as one of its trigrams is in no name.
+     */
+    private int[] rarestGramPostings(String keyword) {
+        int[] rarest = null;
+        for (int start = 0; start + GRAM_LENGTH <= keyword.length(); start++) {
+            int[] positions = grams.get(keyword.substring(start, start + GRAM_LENGTH));
+            if (positions == null) {
+                return new int[0];
+            }
+            if (rarest == null || positions.length < rarest.length) {
+                rarest = positions;
+            }
+        }
+        return rarest;
+    }
+
+    private static void addPosting(Map<String, IntList> index, String key, int position) {
+        IntList positions = index.computeIfAbsent(key, k -> new IntList());
+        // Positions are added in increasing order, so a trigram repeated in a name only needs a check against the last one
+        if (positions.size() == 0 || positions.last() != position) {
+            positions.add(position);
+        }
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, IntList> index) {
+        Map<String, int[]> arrays = new HashMap<>(index.size() * 4 / 3 + 1);
+        index.forEach((key, positions) -> arrays.put(key, positions.toArray()));
+        return arrays;
+    }
+
+    private static void set(BitSet matches, int[] positions) {
+        for (int position : positions) {
+            matches.set(position);
+        }
+    }
+}
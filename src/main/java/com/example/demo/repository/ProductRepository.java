@@ -1,59 +1,219 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Product;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Repository;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Repository
 public class ProductRepository {
-    private final List<Product> products = new ArrayList<>();
     private final Map<String, String> typeToFileMap = new HashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DatasetLoader datasetLoader;
+    private final PurchaseLog purchaseLog;
+    private final CompletableFuture<Catalog> initialLoad;
+    private final AtomicLong version = new AtomicLong(1);
+    private final AtomicLong stockVersion = new AtomicLong(1);
+    private volatile Catalog catalog;
 
-    public ProductRepository() {
+    public ProductRepository(DatasetLoader datasetLoader, DatasetWatcher datasetWatcher, PurchaseLog purchaseLog) {
         // Map product types to their corresponding JSON files
         typeToFileMap.put("perno", "database/pernos.json");
         typeToFileMap.put("tuerca", "database/tuercas.json");
         typeToFileMap.put("volanda", "database/volandas.json");
 
-        // Load products from all JSON files
-        loadProductsFromJsonFiles();
+        // Load products from all JSON files (or their snapshot) in the background; the catalog is published once loaded.
+        // Then take out the units sold since the files were last loaded, as recorded in the purchase log.
+        this.datasetLoader = datasetLoader;
+        this.purchaseLog = purchaseLog;
+        this.initialLoad = loadCatalog(false).thenApply(loaded -> {
+            loaded.removeSold(purchaseLog.getRecoveredStockSold());
+            return loaded;
+        });
+
+        // Reload the whole catalog when any of its files changes in the external data directory
+        Runnable reload = this::reload;
+        typeToFileMap.values().forEach(jsonFile -> datasetWatcher.register(jsonFile, reload));
     }
 
-    private void loadProductsFromJsonFiles() {
-        for (String jsonFile : typeToFileMap.values()) {
-            try {
-                ClassPathResource resource = new ClassPathResource(jsonFile);
-                try (InputStream inputStream = resource.getInputStream()) {
-                    List<Product> loadedProducts = objectMapper.readValue(inputStream, new TypeReference<List<Product>>() {});
-                    products.addAll(loadedProducts);
-                }
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to load products from " + jsonFile, e);
+    /**
+     * Repository over a fixed list of products instead of the JSON files, e.g. the synthetic catalogs
+     * of the benchmarks. {@link #reload()} is not meant to be called on it.
+     */
+    ProductRepository(List<Product> products) {
+        this.datasetLoader = null;
+        this.purchaseLog = null;
+        this.initialLoad = CompletableFuture.completedFuture(new Catalog(ProductColumns.of(products)));
+    }
+
+    /**
+     * Reload the products from the JSON files and swap in the new catalog together with its name index,
+     * so readers see either the previous catalog or the new one, never a mix of both. Readers never lock:
+     * the catalog is built off to the side and published with a single volatile write. When a file fails
+     * to load, the current catalog is kept. The stock in the files replaces the stock left by purchases; a stock
+     * reset is logged so the purchases made before the reload are not taken from it again at the next startup.
+     */
+    public synchronized void reload() {
+        catalog = loadCatalog(true).join();
+        version.incrementAndGet();
+        stockVersion.incrementAndGet();
+        purchaseLog.appendStockReset().join();
+    }
+
+    /**
+     * Load the catalog, from its snapshot unless reloading: a reload always imports the JSON files.
+     */
+    private CompletableFuture<Catalog> loadCatalog(boolean reloading) {
+        List<String> jsonFiles = new ArrayList<>(typeToFileMap.values());
+        CompletableFuture<SnapshotFile> snapshot = reloading
+                ? datasetLoader.reload("products", jsonFiles, () -> importCatalog(jsonFiles))
+                : datasetLoader.load("products", jsonFiles, () -> importCatalog(jsonFiles));
+        return snapshot.thenApply(records -> new Catalog(new ProductColumns(records)));
+    }
+
+    private CompletableFuture<SnapshotFile.Writer> importCatalog(List<String> jsonFiles) {
+        List<CompletableFuture<List<Product>>> parts = new ArrayList<>();
+        for (String jsonFile : jsonFiles) {
+            parts.add(datasetLoader.load("products", jsonFile, inputStream -> {
+                List<Product> products = new ArrayList<>();
+                JsonArrayReader.forEach(objectMapper, inputStream, Product.class, products::add);
+                return products;
+            }));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            // Written in file order, so the catalog order does not depend on which file finished first
+            SnapshotFile.Writer writer = new SnapshotFile.Writer(ProductColumns.RECORD_WIDTH);
+            parts.forEach(part -> ProductColumns.write(part.join(), writer));
+            return writer;
+        });
+    }
+
+    /**
+     * Current catalog, waiting for the initial load if it is still in progress.
+     */
+    private Catalog catalog() {
+        Catalog current = catalog;
+        return current != null ? current : initialLoad.join();
+    }
+
+    /**
+     * Version of the catalog contents. It changes every time the products are (re)loaded, so callers can cache
+     * anything derived from the catalog and rebuild it only when needed. Stock taken or put back by purchases
+     * does not change it; see {@link #getStockVersion()}.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Version of the catalog including the stock: it changes with {@link #getVersion()} and every time
+     * stock is taken or put back, for what quotes the current stock.
+     */
+    public long getStockVersion() {
+        return stockVersion.get();
+    }
+
+    /**
+     * Take the given quantities (by product code) out of the stock, all or nothing: either every product had
+     * enough stock and all of it is taken, or nothing changes and false is returned. Each product's stock is
+     * updated with a compare-and-set, so concurrent reservations never sell more units than there are.
+     */
+    public boolean reserveStock(Map<String, Integer> quantitiesByCodigoProducto) {
+        ProductColumns products = catalog().products;
+        Map<Integer, Integer> reserved = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : quantitiesByCodigoProducto.entrySet()) {
+            int row = products.rowOfCode(entry.getKey());
+            if (row < 0 || entry.getValue() <= 0 || !products.tryReserve(row, entry.getValue())) {
+                reserved.forEach(products::release);
+                return false;
             }
+            reserved.merge(row, entry.getValue(), Integer::sum);
         }
+        stockVersion.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Put back quantities taken by {@link #reserveStock(Map)}, e.g. when the purchase could not be recorded.
+     */
+    public void releaseStock(Map<String, Integer> quantitiesByCodigoProducto) {
+        ProductColumns products = catalog().products;
+        quantitiesByCodigoProducto.forEach((codigoProducto, quantity) -> {
+            int row = products.rowOfCode(codigoProducto);
+            if (row >= 0) {
+                products.release(row, quantity);
+            }
+        });
+        stockVersion.incrementAndGet();
     }
 
     public List<Product> findByTipoProducto(String tipoProducto) {
-        return products.stream()
-                .filter(product -> product.getTipoProducto().equalsIgnoreCase(tipoProducto))
-                .collect(Collectors.toList());
+        return catalog().products.findByType(tipoProducto);
     }
 
+    /**
+     * All the products of the current catalog, in catalog order. The list is a read-only view of the catalog
+     * snapshot rather than a copy: it does not change when the catalog is reloaded. Each element read is a new
+     * Product built from the columns, so iterating it allocates one per row.
+     */
     public List<Product> findAll() {
-        return new ArrayList<>(products);
+        return catalog().products.asList();
+    }
+
+    public Optional<Product> findByCodigoProducto(String codigoProducto) {
+        if (codigoProducto == null) {
+            return Optional.empty();
+        }
+        ProductColumns products = catalog().products;
+        int row = products.rowOfCode(codigoProducto);
+        return row < 0 ? Optional.empty() : Optional.of(products.get(row));
+    }
+
+    /**
+     * The products with the given codes (compared case-insensitively), in catalog order and each once, all read
+     * from the same catalog snapshot. Unknown codes are ignored.
+     */
+    public List<Product> findByCodigosProducto(List<String> codigosProducto) {
+        ProductColumns products = catalog().products;
+        int[] rows = new int[codigosProducto.size()];
+        int count = 0;
+        for (String codigoProducto : codigosProducto) {
+            int row = codigoProducto == null ? -1 : products.rowOfCode(codigoProducto);
+            if (row >= 0) {
+                rows[count++] = row;
+            }
+        }
+        Arrays.sort(rows, 0, count);
+        List<Product> found = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || rows[i] != rows[i - 1]) {
+                found.add(products.get(rows[i]));
+            }
+        }
+        return found;
     }
 
+    /**
+     * Find the products whose whole name equals the given one once both are normalized with
+     * {@link #normalizeKeyword(String)}.
+     */
+    public List<Product> findByProductName(String nombreProducto) {
+        return catalog().nameIndex.findByName(normalizeKeyword(nombreProducto));
+    }
+
+    /**
+     * Find the products whose name contains any of the keywords once both are normalized with
+     * {@link #normalizeKeyword(String)} ("1/4x2", "plana m8", "perno hex"). Lookups go through the name index.
+     */
     public List<Product> findByProductNameKeywords(List<String> keywords) {
         if (keywords == null || keywords.isEmpty()) {
             return new ArrayList<>();
@@ -61,17 +221,10 @@ public class ProductRepository {
         
         // Preprocess keywords to lowercase and normalize for flexible matching
         List<String> normalizedKeywords = keywords.stream()
-                .map(this::normalizeKeyword)
+                .map(ProductRepository::normalizeKeyword)
                 .collect(Collectors.toList());
         
-        return products.stream()
-                .filter(product -> {
-                    String normalizedProductName = normalizeKeyword(product.getNombreProducto());
-                    // A product matches if its normalized name contains any of the normalized keywords
-                    return normalizedKeywords.stream()
-                            .anyMatch(normalizedProductName::contains);
-                })
-                .collect(Collectors.toList());
+        return catalog().nameIndex.findAny(normalizedKeywords);
     }
     
     /**
@@ -81,7 +234,7 @@ public class ProductRepository {
      * - Remove all spaces for consistent matching
      * This helps match "1/4x2" with "1/4\" x 2\"" and similar variations
      */
-    private String normalizeKeyword(String text) {
+    public static String normalizeKeyword(String text) {
         if (text == null) {
             return "";
         }
@@ -90,4 +243,26 @@ public class ProductRepository {
                 .replace("'", "")   // Remove single quotes
                 .replaceAll("\\s+", "");  // Remove all spaces for consistent matching
     }
+
+    /**
+     * Snapshot of the loaded products, stored by column, and the indexes built from them.
+     */
+    private static final class Catalog {
+        private final ProductColumns products;
+        private final ProductNameIndex nameIndex;
+
+        private Catalog(ProductColumns products) {
+            this.products = products;
+            this.nameIndex = ProductNameIndex.build(this.products.asList());
+        }
+
+        private void removeSold(Map<String, Integer> soldByCodigoProducto) {
+            soldByCodigoProducto.forEach((codigoProducto, sold) -> {
+                int row = products.rowOfCode(codigoProducto);
+                if (row >= 0) {
+                    products.remove(row, sold);
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,443 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.CompletedPurchase;
+import com.example.demo.model.PurchaseItem;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append-only write-ahead log of the purchases recorded through the application, kept in
+ * app.data.purchase-log.dir so they, and the stock they took, survive a restart.
+ *
+ * Entries are JSON lines numbered by a log sequence number (LSN) and appended to segment files
+ * (purchases-&lt;first LSN&gt;.log) by a single writer thread through a {@link FileChannel}. The writer takes
+ * every entry queued while the previous batch was being written and commits them with one write and one
+ * fsync (group commit), so an append costs the caller a queue insertion plus its share of an fsync.
+ * The returned future completes once the entry is durable.
+ *
+ * When a segment grows past app.data.purchase-log.compact-after-bytes, the writer starts a new one, and a
+ * background thread writes everything logged so far into purchases.snapshot and deletes the older segments.
+ * At startup the snapshot is loaded and the segments replayed from the LSN after it; a torn entry at the end
+ * of the log (a crash in the middle of a write, up to its final newline) is dropped. The directory is fsynced
+ * after a segment is created and after the snapshot is renamed into place, so neither is lost in a crash.
+ * Disabled when no directory is configured.
+ */
+@Component
+public class PurchaseLog implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(PurchaseLog.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("purchases-(\\d+)\\.log");
+    private static final String SNAPSHOT_FILE = "purchases.snapshot";
+    private static final int MAX_BATCH = 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path directory;
+    private final long compactAfterBytes;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService compactor;
+
+    // Everything logged so far, folded: what the next snapshot will contain. Only touched by the writer thread
+    // once the recovery is done; the compactor works on copies.
+    private final List<CompletedPurchase> purchases = new ArrayList<>();
+    private final Map<String, Integer> stockSold = new HashMap<>();
+    private final List<CompletedPurchase> recoveredPurchases;
+    private final Map<String, Integer> recoveredStockSold;
+
+    private long nextLsn = 1;
+    private FileChannel segment;
+    private Thread writer;
+
+    public PurchaseLog(
+            @Value("${app.data.purchase-log.dir:}") String directory,
+            @Value("${app.data.purchase-log.compact-after-bytes:67108864}") long compactAfterBytes) {
+        this.directory = directory == null || directory.isBlank() ? null : Paths.get(directory);
+        this.compactAfterBytes = compactAfterBytes;
+        if (this.directory == null) {
+            this.compactor = null;
+            this.recoveredPurchases = List.of();
+            this.recoveredStockSold = Map.of();
+            return;
+        }
+        try {
+            Files.createDirectories(this.directory);
+            recover();
+            segment = openSegment(nextLsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the purchase log in " + this.directory, e);
+        }
+        this.recoveredPurchases = List.copyOf(purchases);
+        this.recoveredStockSold = Map.copyOf(stockSold);
+        this.compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "purchase-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::writeLoop, "purchase-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Purchases found in the log at startup, in the order they were logged.
+     */
+    public List<CompletedPurchase> getRecoveredPurchases() {
+        return recoveredPurchases;
+    }
+
+    /**
+     * Units sold per product code since the last stock reset, as found in the log at startup.
+     */
+    public Map<String, Integer> getRecoveredStockSold() {
+        return recoveredStockSold;
+    }
+
+    /**
+     * Log a purchase; the future completes once it is durable.
+     */
+    public CompletableFuture<Void> appendPurchase(CompletedPurchase purchase) {
+        return append(new Entry("purchase", purchase));
+    }
+
+    /**
+     * Log that the product stock was reloaded from the files, so the units sold before this point are not
+     * taken from the reloaded stock again at the next startup.
+     */
+    public CompletableFuture<Void> appendStockReset() {
+        return append(new Entry("stock_reset", null));
+    }
+
+    private CompletableFuture<Void> append(Entry entry) {
+        if (directory == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        queue.add(entry);
+        return entry.durable;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (writer == null) {
+            return;
+        }
+        // Let the writer commit what is queued and a pending compaction finish, then stop
+        queue.add(Entry.STOP);
+        writer.join();
+        compactor.shutdown();
+        compactor.awaitTermination(30, TimeUnit.SECONDS);
+        segment.close();
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            boolean stop = batch.remove(Entry.STOP);
+            commit(batch);
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private void commit(List<Entry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long firstLsn = nextLsn;
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                buffers[i] = ByteBuffer.wrap(toLine(firstLsn + i, batch.get(i)));
+            }
+            long position = segment.position();
+            try {
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    segment.write(buffers);
+                }
+                segment.force(false);
+            } catch (IOException e) {
+                // Drop the partial batch, so the log never holds entries whose callers were told they failed
+                segment.truncate(position);
+                segment.position(position);
+                throw e;
+            }
+        } catch (IOException e) {
+            UncheckedIOException failure = new UncheckedIOException("Failed to write to the purchase log", e);
+            batch.forEach(entry -> entry.durable.completeExceptionally(failure));
+            return;
+        }
+        nextLsn += batch.size();
+        batch.forEach(entry -> {
+            apply(entry.type, entry.purchase);
+            entry.durable.complete(null);
+        });
+        rotateIfNeeded();
+    }
+
+    private void rotateIfNeeded() {
+        try {
+            if (segment.size() < compactAfterBytes) {
+                return;
+            }
+            FileChannel previous = segment;
+            segment = openSegment(nextLsn);
+            previous.close();
+        } catch (IOException e) {
+            logger.warn("Failed to start a new purchase log segment, compaction postponed", e);
+            return;
+        }
+        // Snapshot of the state as of the last committed entry; the compactor works on copies
+        long lastLsn = nextLsn - 1;
+        List<CompletedPurchase> snapshotPurchases = List.copyOf(purchases);
+        Map<String, Integer> snapshotStockSold = Map.copyOf(stockSold);
+        compactor.execute(() -> compact(lastLsn, snapshotPurchases, snapshotStockSold));
+    }
+
+    private void compact(long lastLsn, List<CompletedPurchase> snapshotPurchases, Map<String, Integer> snapshotStockSold) {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                ObjectNode header = objectMapper.createObjectNode();
+                header.put("lastLsn", lastLsn);
+                header.set("stockSold", objectMapper.valueToTree(snapshotStockSold));
+                out.write(objectMapper.writeValueAsString(header));
+                out.newLine();
+                for (CompletedPurchase purchase : snapshotPurchases) {
+                    out.write(objectMapper.writeValueAsString(purchase));
+                    out.newLine();
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // The rename is only durable once the directory is; until then the segments must stay
+            forceDirectory();
+            // Segments starting at or before the snapshot only hold entries it already contains
+            for (Path file : segments()) {
+                if (segmentStart(file) <= lastLsn) {
+                    Files.delete(file);
+                }
+            }
+            logger.info("Compacted the purchase log up to LSN {} ({} purchases)", lastLsn, snapshotPurchases.size());
+        } catch (IOException e) {
+            logger.warn("Failed to compact the purchase log, the segments are kept", e);
+        }
+    }
+
+    private void recover() throws IOException {
+        long lastLsn = 0;
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (BufferedReader in = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+                JsonNode header = objectMapper.readTree(in.readLine());
+                lastLsn = header.get("lastLsn").asLong();
+                header.get("stockSold").fields().forEachRemaining(sold -> stockSold.put(sold.getKey(), sold.getValue().asInt()));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    purchases.add(objectMapper.readValue(line, CompletedPurchase.class));
+                }
+            }
+        }
+        nextLsn = lastLsn + 1;
+
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            replay(segments.get(i), i == segments.size() - 1);
+        }
+    }
+
+    /**
+     * Replay the entries of a segment. Only lines ending with '\n' count: the newline is the last byte of an
+     * entry's write, so a line without one (or one that does not parse) was never acknowledged. At the end of
+     * the last segment such a tail is truncated, so the next entry starts on a line of its own; anywhere else it
+     * means the log is corrupt.
+     */
+    private void replay(Path file, boolean lastSegment) throws IOException {
+        long validBytes = 0;
+        boolean torn = false;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] chunk = new byte[64 * 1024];
+            ByteArrayOutputStream line = new ByteArrayOutputStream(1024);
+            int read;
+            scan:
+            while ((read = in.read(chunk)) > 0) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != '\n') {
+                        continue;
+                    }
+                    line.write(chunk, start, i - start);
+                    start = i + 1;
+                    if (!replayLine(line.toString(StandardCharsets.UTF_8))) {
+                        torn = true;
+                        break scan;
+                    }
+                    validBytes += line.size() + 1;
+                    line.reset();
+                }
+                line.write(chunk, start, read - start);
+            }
+            torn |= line.size() > 0;
+        }
+        if (!torn) {
+            return;
+        }
+        if (!lastSegment) {
+            throw new IOException("Corrupt purchase log entry in " + file);
+        }
+        logger.warn("Dropping a torn entry at the end of {}", file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(validBytes);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Apply one complete line of a segment, returning false when it is not a log entry.
+     */
+    private boolean replayLine(String line) throws IOException {
+        JsonNode entry;
+        try {
+            entry = objectMapper.readTree(line);
+        } catch (IOException e) {
+            return false;
+        }
+        if (entry == null || !entry.has("lsn")) {
+            return false;
+        }
+        long lsn = entry.get("lsn").asLong();
+        if (lsn < nextLsn) {
+            // Already in the snapshot
+            return true;
+        }
+        CompletedPurchase purchase = entry.has("purchase")
+                ? objectMapper.treeToValue(entry.get("purchase"), CompletedPurchase.class)
+                : null;
+        apply(entry.get("type").asText(), purchase);
+        nextLsn = lsn + 1;
+        return true;
+    }
+
+    private void apply(String type, CompletedPurchase purchase) {
+        if ("stock_reset".equals(type)) {
+            stockSold.clear();
+            return;
+        }
+        purchases.add(purchase);
+        if (purchase.getProductos() != null) {
+            for (PurchaseItem item : purchase.getProductos()) {
+                stockSold.merge(item.getCodigoProducto(), item.getCantidad(), Integer::sum);
+            }
+        }
+    }
+
+    private byte[] toLine(long lsn, Entry entry) throws IOException {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("lsn", lsn);
+        node.put("type", entry.type);
+        if (entry.purchase != null) {
+            node.set("purchase", objectMapper.valueToTree(entry.purchase));
+        }
+        return (objectMapper.writeValueAsString(node) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve("purchases-" + firstLsn + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // Make the new file's directory entry durable before entries written to it are acknowledged
+        try {
+            forceDirectory();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Flush the directory itself, making the files created, renamed or deleted in it durable. Skipped where a
+     * directory cannot be opened for it (Windows, whose file system does not need it).
+     */
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            if (System.getProperty("os.name", "").startsWith("Windows")) {
+                return;
+            }
+            throw e;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (var files = Files.list(directory)) {
+            files.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches()).forEach(segments::add);
+        }
+        segments.sort((a, b) -> Long.compare(segmentStart(a), segmentStart(b)));
+        return segments;
+    }
+
+    private static long segmentStart(Path file) {
+        Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : Long.MAX_VALUE;
+    }
+
+    private static final class Entry {
+        private static final Entry STOP = new Entry("stop", null);
+
+        private final String type;
+        private final CompletedPurchase purchase;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Entry(String type, CompletedPurchase purchase) {
+            this.type = type;
+            this.purchase = purchase;
+        }
+    }
+}
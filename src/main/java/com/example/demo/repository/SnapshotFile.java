@@ -0,0 +1,226 @@
+package com.example.demo.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a dataset: a table of fixed-width records followed by a string table. Strings are stored
+ * once in the table and referenced from the records by a 4-byte id (-1 for null), so any field of any record is
+ * read by offset without parsing anything before it. The repositories keep their data in a snapshot and read
+ * the records they are asked for, decoding a string only when it is read; their indexes hold record numbers.
+ *
+ * Layout (big-endian): header (magic, format version, source stamp, record count, record width, string count,
+ * string table position), records, then the string table (string count + 1 byte offsets, then UTF-8 bytes).
+ * The source stamp identifies the JSON files the snapshot was built from; {@link #open(Path, long)} ignores a
+ * snapshot with another stamp. A snapshot on disk is read through a read-only {@link MappedByteBuffer}, one built
+ * without a file (see {@link Writer#toSnapshot()}) through a heap buffer of the same layout.
+ */
+final class SnapshotFile {
+    private static final int MAGIC = 0x534E4150;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4 + 4 + 8;
+
+    private final ByteBuffer buffer;
+    private final int records;
+    private final int recordWidth;
+    private final int stringCount;
+    private final int stringOffsets;
+    private final int stringBytes;
+
+    private SnapshotFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        this.records = buffer.getInt(16);
+        this.recordWidth = buffer.getInt(20);
+        this.stringCount = buffer.getInt(24);
+        long stringTable = buffer.getLong(28);
+        if (records < 0 || recordWidth <= 0 || stringCount < 0
+                || stringTable != HEADER_BYTES + (long) records * recordWidth
+                || stringTable + 4L * (stringCount + 1) > buffer.limit()) {
+            throw new IOException("Corrupt snapshot header");
+        }
+        this.stringOffsets = (int) stringTable;
+        this.stringBytes = stringOffsets + 4 * (stringCount + 1);
+        if (stringBytes + (long) buffer.getInt(stringOffsets + 4 * stringCount) != buffer.limit()) {
+            throw new IOException("Truncated snapshot");
+        }
+    }
+
+    /**
+     * Map the snapshot at the given path, or return null when it is missing or was built from other source files.
+     */
+    static SnapshotFile open(Path path, long sourceStamp) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected snapshot size " + channel.size());
+            }
+            // The mapping stays valid once the channel is closed, and after the file is replaced or deleted
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getLong(8) != sourceStamp) {
+                return null;
+            }
+            return new SnapshotFile(buffer);
+        }
+    }
+
+    int records() {
+        return records;
+    }
+
+    int getInt(int record, int offset) {
+        return buffer.getInt(position(record, offset));
+    }
+
+    double getDouble(int record, int offset) {
+        return buffer.getDouble(position(record, offset));
+    }
+
+    /**
+     * String referenced by the record field, decoded from the string table.
+     */
+    String getString(int record, int offset) {
+        return string(getInt(record, offset));
+    }
+
+    /**
+     * String of the given id, as stored in a record field; null for -1. Equal strings share an id, so a
+     * field repeated across records (a product type, a district) can be decoded once per id by the caller.
+     */
+    String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int start = buffer.getInt(stringOffsets + 4 * id);
+        int end = buffer.getInt(stringOffsets + 4 * (id + 1));
+        byte[] bytes = new byte[end - start];
+        buffer.get(stringBytes + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int position(int record, int offset) {
+        return HEADER_BYTES + record * recordWidth + offset;
+    }
+
+    /**
+     * Builds a snapshot one record at a time; each record must write exactly the record width.
+     */
+    static final class Writer {
+        private final int recordWidth;
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<byte[]> strings = new ArrayList<>();
+        private ByteBuffer recordBytes;
+        private int stringTableBytes;
+        private int records;
+
+        Writer(int recordWidth) {
+            this.recordWidth = recordWidth;
+            this.recordBytes = ByteBuffer.allocate(recordWidth * 64);
+        }
+
+        Writer putString(String value) {
+            if (value == null) {
+                return putInt(-1);
+            }
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = strings.size();
+                stringIds.put(value, id);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                strings.add(bytes);
+                stringTableBytes += bytes.length;
+            }
+            return putInt(id);
+        }
+
+        Writer putInt(int value) {
+            ensureRemaining(4);
+            recordBytes.putInt(value);
+            return this;
+        }
+
+        Writer putDouble(double value) {
+            ensureRemaining(8);
+            recordBytes.putDouble(value);
+            return this;
+        }
+
+        void endRecord() {
+            records++;
+            if (recordBytes.position() != records * recordWidth) {
+                throw new IllegalStateException("Snapshot record " + records + " is not " + recordWidth + " bytes wide");
+            }
+        }
+
+        /**
+         * Snapshot of the records written so far, held on the heap, e.g. when there is no snapshot directory.
+         */
+        SnapshotFile toSnapshot() {
+            try {
+                return new SnapshotFile(toBuffer(0));
+            } catch (IOException e) {
+                throw new IllegalStateException("Inconsistent snapshot", e);
+            }
+        }
+
+        /**
+         * Write the snapshot next to the target and move it into place, so a reader never maps a partial file.
+         */
+        void writeTo(Path path, long sourceStamp) throws IOException {
+            ByteBuffer snapshot = toBuffer(sourceStamp);
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (snapshot.hasRemaining()) {
+                    channel.write(snapshot);
+                }
+                channel.force(false);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private ByteBuffer toBuffer(long sourceStamp) {
+            long size = HEADER_BYTES + (long) recordBytes.position() + 4L * (strings.size() + 1) + stringTableBytes;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Snapshot of " + size + " bytes is too large");
+            }
+            ByteBuffer snapshot = ByteBuffer.allocate((int) size)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(sourceStamp)
+                    .putInt(records)
+                    .putInt(recordWidth)
+                    .putInt(strings.size())
+                    .putLong(HEADER_BYTES + (long) recordBytes.position())
+                    .put(recordBytes.array(), 0, recordBytes.position());
+            int offset = 0;
+            for (byte[] string : strings) {
+                snapshot.putInt(offset);
+                offset += string.length;
+            }
+            snapshot.putInt(offset);
+            strings.forEach(snapshot::put);
+            return snapshot.flip();
+        }
+
+        private void ensureRemaining(int bytes) {
+            if (recordBytes.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(recordBytes.capacity() * 2, recordBytes.position() + bytes));
+                recordBytes.flip();
+                recordBytes = grown.put(recordBytes);
+            }
+        }
+    }
+}
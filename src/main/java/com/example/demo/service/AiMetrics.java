@@ -0,0 +1,83 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the AI chat pipeline, published through Spring Boot Actuator:
+ * - ai.chat.stage: latency of each stage (client_lookup, fast_path, catalog, prompt, llm, parse, total)
+ *   with p50/p99 and a histogram
+ * - ai.chat.responses: responses by request type (request_info, purchase, unknown) and by source
+ *   (llm, cache, fast_path, coalesced: shared the LLM call of an identical request in flight,
+ *   llm_unavailable: answered as unknown while the LLM could not be reached)
+ * - ai.chat.parse.failures: completions that could not be parsed as JSON
+ * - ai.chat.cache.*, ai.chat.fast-path.served: response cache and fast path activity
+ * - ai.chat.batch.size: requests sent in each completion when batching is enabled
+ */
+@Component
+public class AiMetrics {
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> responseCounters = new ConcurrentHashMap<>();
+    private final Counter parseFailures;
+    private final DistributionSummary batchSizes;
+
+    public AiMetrics(MeterRegistry registry, ChatResponseCache responseCache, FastPathClassifier fastPathClassifier) {
+        this.registry = registry;
+        this.parseFailures = Counter.builder("ai.chat.parse.failures")
+                .description("LLM completions that could not be parsed as JSON")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("ai.chat.batch.size")
+                .description("Chat requests sent to the LLM in a single completion")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        FunctionCounter.builder("ai.chat.cache.hits", responseCache, ChatResponseCache::getHits)
+                .description("Chat requests answered from the completion cache")
+                .register(registry);
+        FunctionCounter.builder("ai.chat.cache.misses", responseCache, ChatResponseCache::getMisses)
+                .description("Chat requests not found in the completion cache")
+                .register(registry);
+        Gauge.builder("ai.chat.cache.size", responseCache, ChatResponseCache::size)
+                .description("Completions currently cached")
+                .register(registry);
+        FunctionCounter.builder("ai.chat.fast-path.served", fastPathClassifier, FastPathClassifier::getServedCount)
+                .description("Chat requests answered without calling the LLM")
+                .register(registry);
+    }
+
+    public void recordStage(String stage, long nanos) {
+        stageTimers.computeIfAbsent(stage, name -> Timer.builder("ai.chat.stage")
+                        .description("Latency of each stage of the AI chat pipeline")
+                        .tag("stage", name)
+                        .publishPercentiles(0.5, 0.99)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordResponse(String requestType, String source) {
+        responseCounters.computeIfAbsent(requestType + "/" + source, key -> Counter.builder("ai.chat.responses")
+                        .description("Chat responses by request type and source")
+                        .tag("type", requestType)
+                        .tag("source", source)
+                        .register(registry))
+                .increment();
+    }
+
+    public void recordParseFailure() {
+        parseFailures.increment();
+    }
+
+    public void recordBatch(int size) {
+        batchSizes.record(size);
+    }
+}
@@ -1,44 +1,269 @@
 package com.example.demo.service;
 
+import com.example.demo.model.ChatPayload;
 import com.example.demo.model.ChatResponse;
 import com.example.demo.model.Client;
+import com.example.demo.model.CompletedPurchase;
 import com.example.demo.model.Product;
 import com.example.demo.repository.ProductRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.theokanning.openai.completion.chat.ChatCompletionRequest;
 import com.theokanning.openai.completion.chat.ChatMessage;
-import com.theokanning.openai.service.OpenAiService;
-import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 @Service
 public class AiService {
-    private static final String UNKNOWN_REQUEST_MESSAGE = "Lo siento, no logré entender tu solicitud. ¿Puedes proporcionar más detalles o intentar reformular tu pedido?";
+    private static final Logger logger = LoggerFactory.getLogger(AiService.class);
+
+    static final int MAX_TOKENS = 1000;
+    // Most tokens gpt-3.5-turbo completes in one call; a larger max_tokens is rejected with a 400
+    static final int MAX_COMPLETION_TOKENS = 4096;
+    static final String UNKNOWN_REQUEST_MESSAGE = "Lo siento, no logré entender tu solicitud. ¿Puedes proporcionar más detalles o intentar reformular tu pedido?";
     
-    private final OpenAiService openAiService;
+    private final LlmClient llmClient;
+    private final ChatBatcher chatBatcher;
+    private final CatalogPromptProvider catalogPromptProvider;
+    private final CatalogRetriever catalogRetriever;
     private final ProductRepository productRepository;
-    private final ObjectMapper objectMapper;
+    private final ChatResponseCache responseCache;
+    private final FastPathClassifier fastPathClassifier;
+    private final PurchaseService purchaseService;
+    private final AiMetrics metrics;
+    private final Executor chatExecutor;
+    private final SingleFlight<String> inFlightCompletions = new SingleFlight<>();
 
     public AiService(
-            @Value("${openai.api.key}") String apiKey,
-            ProductRepository productRepository) {
-        if (apiKey == null || apiKey.trim().isEmpty() || apiKey.equals("your-api-key-here")) {
-            throw new IllegalArgumentException("OpenAI API key must be configured. Set OPENAI_API_KEY environment variable.");
-        }
-        this.openAiService = new OpenAiService(apiKey);
+            LlmClient llmClient,
+            ChatBatcher chatBatcher,
+            CatalogPromptProvider catalogPromptProvider,
+            CatalogRetriever catalogRetriever,
+            ProductRepository productRepository,
+            ChatResponseCache responseCache,
+            FastPathClassifier fastPathClassifier,
+            PurchaseService purchaseService,
+            AiMetrics metrics,
+            @Qualifier("aiChatExecutor") Executor chatExecutor) {
+        this.llmClient = llmClient;
+        this.chatBatcher = chatBatcher;
+        this.catalogPromptProvider = catalogPromptProvider;
+        this.catalogRetriever = catalogRetriever;
         this.productRepository = productRepository;
-        this.objectMapper = new ObjectMapper();
+        this.responseCache = responseCache;
+        this.fastPathClassifier = fastPathClassifier;
+        this.purchaseService = purchaseService;
+        this.metrics = metrics;
+        this.chatExecutor = chatExecutor;
+    }
+
+    /**
+     * Run {@link #chat(String, Client)} on the chat executor, so the calling servlet thread is not blocked
+     * during the OpenAI round trip. The future fails with a {@link RejectedExecutionException} when the
+     * executor is saturated.
+     */
+    public CompletableFuture<ChatResponse> chatAsync(String userMessage, Client client) {
+        try {
+            return CompletableFuture.supplyAsync(() -> chat(userMessage, client), chatExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     public ChatResponse chat(String userMessage, Client client) {
+        validateChatInput(userMessage, client);
+        long start = System.nanoTime();
+
+        // Unambiguous price/stock lookups are answered without calling the LLM
+        Optional<ChatResponse> fastPathResponse = fastPathClassifier.tryAnswer(userMessage, client.getCodigoCliente());
+        start = recordStage("fast_path", start);
+        if (fastPathResponse.isPresent()) {
+            return recordResponse(fastPathResponse.get(), "fast_path");
+        }
+
+        // The system message (instructions plus the full catalog) is rendered once per catalog version
+        CatalogPrompt catalogPrompt = catalogPromptProvider.getCatalogPrompt();
+
+        // The same question against the same catalog version reuses the cached completion
+        Optional<String> cachedResponse = responseCache.get(userMessage, catalogPrompt.getVersion());
+        start = recordStage("catalog", start);
+        if (cachedResponse.isPresent()) {
+            ChatResponse response = parseAiResponse(cachedResponse.get(), client.getCodigoCliente());
+            start = recordStage("parse", start);
+            return recordResponse(executePurchase(response, client, start), "cache");
+        }
+
+        // Only send the products relevant to the message, unless no candidate scored high enough
+        List<Product> candidates = catalogRetriever.selectCandidates(userMessage);
+        String userContent = userContent(userMessage, client);
+        start = recordStage("prompt", start);
+
+        // Call OpenAI API, possibly batched with concurrent requests; while it is unreachable the request
+        // is answered as not understood. Concurrent requests with the same message and catalog version share
+        // one call, like cache hits share a completion
+        String aiResponse;
+        boolean coalesced;
+        try {
+            SingleFlight.Result<String> completion = inFlightCompletions.run(
+                    ChatResponseCache.key(userMessage, catalogPrompt.getVersion()),
+                    () -> chatBatcher.complete(catalogPrompt, candidates, userContent));
+            aiResponse = completion.getValue();
+            coalesced = completion.isShared();
+        } catch (LlmUnavailableException e) {
+            recordStage("llm", start);
+            logger.warn("Answering without the LLM: {}", e.getMessage());
+            return recordResponse(unknownResponse(client.getCodigoCliente()), "llm_unavailable");
+        }
+        start = recordStage("llm", start);
+
+        // Parse AI response and build structured response with filtered products
+        ChatResponse response = parseAiResponse(aiResponse, client.getCodigoCliente());
+        start = recordStage("parse", start);
+        if (!coalesced) {
+            cacheResponse(userMessage, catalogPrompt, aiResponse, response);
+        }
+        return recordResponse(executePurchase(response, client, start), coalesced ? "coalesced" : "llm");
+    }
+
+    /**
+     * Streaming variant of {@link #chat(String, Client)}, run on the chat executor. The text of the
+     * "message" field is handed to {@code onMessageText} as the completion tokens arrive; the returned
+     * future completes with the fully parsed response once the completion is done.
+     */
+    public CompletableFuture<ChatResponse> chatStream(String userMessage, Client client, Consumer<String> onMessageText) {
+        try {
+            return CompletableFuture.supplyAsync(() -> streamChat(userMessage, client, onMessageText), chatExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private ChatResponse streamChat(String userMessage, Client client, Consumer<String> onMessageText) {
+        validateChatInput(userMessage, client);
+        long start = System.nanoTime();
+
+        Optional<ChatResponse> fastPathResponse = fastPathClassifier.tryAnswer(userMessage, client.getCodigoCliente());
+        start = recordStage("fast_path", start);
+        if (fastPathResponse.isPresent()) {
+            onMessageText.accept(fastPathResponse.get().getResponseMessage());
+            return recordResponse(fastPathResponse.get(), "fast_path");
+        }
+
+        CatalogPrompt catalogPrompt = catalogPromptProvider.getCatalogPrompt();
+
+        Optional<String> cachedResponse = responseCache.get(userMessage, catalogPrompt.getVersion());
+        start = recordStage("catalog", start);
+        if (cachedResponse.isPresent()) {
+            ChatResponse response = parseAiResponse(cachedResponse.get(), client.getCodigoCliente());
+            start = recordStage("parse", start);
+            response = executePurchase(response, client, start);
+            onMessageText.accept(response.getResponseMessage());
+            return recordResponse(response, "cache");
+        }
+
+        ChatCompletionRequest chatCompletionRequest = buildChatCompletionRequest(userMessage, client, catalogPrompt);
+        start = recordStage("prompt", start);
+
+        StreamingMessageExtractor extractor = new StreamingMessageExtractor();
+        AtomicBoolean messageStarted = new AtomicBoolean();
+        try {
+            llmClient.streamChatCompletion(chatCompletionRequest, chunk -> {
+                if (chunk.getChoices() == null || chunk.getChoices().isEmpty()) {
+                    return;
+                }
+                ChatMessage delta = chunk.getChoices().get(0).getMessage();
+                if (delta == null || delta.getContent() == null) {
+                    return;
+                }
+                String messageText = extractor.append(delta.getContent());
+                if (!messageText.isEmpty()) {
+                    messageStarted.set(true);
+                    onMessageText.accept(messageText);
+                }
+            });
+        } catch (LlmUnavailableException e) {
+            // Once part of the message was sent it can no longer be replaced
+            if (messageStarted.get()) {
+                throw e;
+            }
+            recordStage("llm", start);
+            logger.warn("Answering without the LLM: {}", e.getMessage());
+            onMessageText.accept(UNKNOWN_REQUEST_MESSAGE);
+            return recordResponse(unknownResponse(client.getCodigoCliente()), "llm_unavailable");
+        }
+        start = recordStage("llm", start);
+
+        String aiResponse = extractor.getCompletion();
+        ChatResponse response = parseAiResponse(aiResponse, client.getCodigoCliente());
+        start = recordStage("parse", start);
+        cacheResponse(userMessage, catalogPrompt, aiResponse, response);
+        return recordResponse(executePurchase(response, client, start), "llm");
+    }
+
+    /**
+     * Record the time elapsed since {@code start} for the given stage and return the current time,
+     * the start of the next stage.
+     */
+    private long recordStage(String stage, long start) {
+        long now = System.nanoTime();
+        metrics.recordStage(stage, now - start);
+        return now;
+    }
+
+    private ChatResponse recordResponse(ChatResponse response, String source) {
+        metrics.recordResponse(response.getInformation().getType(), source);
+        return response;
+    }
+
+    /**
+     * Execute the purchase the completion asked for, replacing the echoed items with the recorded purchase,
+     * or with the reason it was rejected (type "purchase_rejected"). Other responses are returned unchanged.
+     */
+    private ChatResponse executePurchase(ChatResponse response, Client client, long start) {
+        if (!(response.getInformation() instanceof ChatPayload.PurchaseOrder order)) {
+            return response;
+        }
+        Map<String, Integer> quantitiesByItem = new LinkedHashMap<>();
+        for (ChatPayload.OrderLine line : order.getResponse()) {
+            quantitiesByItem.merge(line.getName(), line.getQuantity(), Integer::sum);
+        }
+
+        ChatPayload information;
+        String message;
+        try {
+            CompletedPurchase purchase = purchaseService.purchase(client, quantitiesByItem);
+            information = new ChatPayload.Purchase(purchase);
+            message = String.format(Locale.ROOT, "Tu compra %s fue registrada por un total de S/ %.2f.",
+                    purchase.getCodigoCompra(), purchase.getMontoTotal());
+        } catch (PurchaseRejectedException e) {
+            information = new ChatPayload.PurchaseRejected(e.getMessage());
+            message = e.getMessage();
+        }
+        recordStage("purchase", start);
+        return new ChatResponse(response.getClient(), message, information);
+    }
+
+    private void cacheResponse(String userMessage, CatalogPrompt catalogPrompt, String aiResponse, ChatResponse response) {
+        // Unknown or unparseable completions are not cached: they are often a one-off misreading by the model
+        if (!(response.getInformation() instanceof ChatPayload.Unknown)) {
+            responseCache.put(userMessage, catalogPrompt.getVersion(), aiResponse);
+        }
+    }
+
+    private void validateChatInput(String userMessage, Client client) {
         if (userMessage == null || userMessage.trim().isEmpty()) {
             throw new IllegalArgumentException("User message cannot be null or empty");
         }
@@ -46,7 +271,21 @@ public class AiService {
         if (client == null) {
             throw new IllegalArgumentException("Client cannot be null");
         }
+    }
 
+    private ChatCompletionRequest buildChatCompletionRequest(String userMessage, Client client, CatalogPrompt catalogPrompt) {
+        // Only send the products relevant to the message, unless no candidate scored high enough
+        List<Product> candidates = catalogRetriever.selectCandidates(userMessage);
+        String systemMessage = candidates.isEmpty()
+                ? catalogPrompt.getSystemMessage()
+                : catalogPrompt.getSystemMessage(candidates);
+        return chatCompletionRequest(systemMessage, userContent(userMessage, client), MAX_TOKENS);
+    }
+
+    /**
+     * User message sent to the LLM: the client context followed by the request.
+     */
+    private static String userContent(String userMessage, Client client) {
         // Build client context
         String clientContext = String.format(
             "Client Information: Code: %s, Name: %s, Address: %s, District: %s, City: %s, Phone: %s, Email: %s",
@@ -59,149 +298,52 @@ public class AiService {
             client.getEmail()
         );
 
-        // STEP 1: Load ALL product information from the database
-        List<Product> allProducts = productRepository.findAll();
-        String productContext = buildDetailedProductContext(allProducts);
-
-        // Build the system message with complete product information
-        String systemMessage = "You are a helpful assistant for an e-commerce store that sells three types of products: perno, tuerca, and volanda. " +
-                "You have access to the complete product catalog below.\n\n" +
-                "Analyze the user's request and filter the products that match what the user is asking for.\n\n" +
-                "For requests about prices or stock information, respond with:\n" +
-                "{\n" +
-                "  \"requestType\": \"request_info\",\n" +
-                "  \"productCodes\": [\"P-001\", \"P-002\", \"V-005\", ...],\n" +
-                "  \"message\": \"Estoy recuperando la información de precios y stock\"\n" +
-                "}\n\n" +
-                "IMPORTANT: In productCodes, include ONLY the product codes (codigoProducto) of products that match the user's request. " +
-                "Analyze the user's message carefully and match against product names, types, sizes, and specifications.\n" +
-                "For example:\n" +
-                "- User asks for 'Perno Hexagonal 1/4x2' → return [\"P-001\"] if that product exists\n" +
-                "- User asks for 'volandas Planas M8' → return codes of all M8 flat volandas\n" +
-                "- User asks for multiple items → return codes of ALL matching products\n\n" +
-                "For purchase requests, respond with:\n" +
-                "{\n" +
-                "  \"requestType\": \"purchase\",\n" +
-                "  \"items\": [{\"name\": \"product1\", \"quantity\": 10}, {\"name\": \"product2\", \"quantity\": 5}, ...],\n" +
-                "  \"message\": \"A natural message saying you're processing the purchase\"\n" +
-                "}\n\n" +
-                "For unclear or unrelated requests, respond with:\n" +
-                "{\n" +
-                "  \"requestType\": \"unknown\",\n" +
-                "  \"message\": \"" + UNKNOWN_REQUEST_MESSAGE + "\"\n" +
-                "}\n\n" +
-                "Complete Product Catalog:\n" + productContext;
-
         // Concatenate client context to user message
-        String enhancedMessage = clientContext + "\n\nUser request: " + userMessage;
+        return clientContext + "\n\nUser request: " + userMessage;
+    }
 
+    static ChatCompletionRequest chatCompletionRequest(String systemMessage, String userContent, int maxTokens) {
         // Create chat messages
         List<ChatMessage> messages = new ArrayList<>();
         messages.add(new ChatMessage("system", systemMessage));
-        messages.add(new ChatMessage("user", enhancedMessage));
+        messages.add(new ChatMessage("user", userContent));
 
         // Create chat completion request
-        ChatCompletionRequest chatCompletionRequest = ChatCompletionRequest.builder()
+        return ChatCompletionRequest.builder()
                 .model("gpt-3.5-turbo")
                 .messages(messages)
-                .maxTokens(1000)
+                .maxTokens(maxTokens)
                 .temperature(0.3)
                 .build();
-
-        // Call OpenAI API
-        var chatCompletion = openAiService.createChatCompletion(chatCompletionRequest);
-        
-        if (chatCompletion.getChoices() == null || chatCompletion.getChoices().isEmpty()) {
-            throw new RuntimeException("OpenAI API returned no response choices");
-        }
-        
-        String aiResponse = chatCompletion.getChoices().get(0).getMessage().getContent();
-
-        // Parse AI response and build structured response with filtered products
-        return parseAiResponse(aiResponse, client.getCodigoCliente(), allProducts);
     }
 
-    private ChatResponse parseAiResponse(String aiResponse, String codigoCliente, List<Product> allProducts) {
+    ChatResponse parseAiResponse(String aiResponse, String codigoCliente) {
+        ParsedCompletion completion;
         try {
-            // Try to parse as JSON
-            JsonNode jsonNode = objectMapper.readTree(aiResponse);
-            
-            String requestType = jsonNode.has("requestType") ? jsonNode.get("requestType").asText() : "unknown";
-            String message = jsonNode.has("message") ? jsonNode.get("message").asText() : "Processing your request";
-            
-            Map<String, Object> information = new HashMap<>();
-            
-            if ("request_info".equals(requestType)) {
-                // Request for prices or stock - filter products by codes returned from AI
-                information.put("type", "request_info");
-                List<Product> productDetails = new ArrayList<>();
-                if (jsonNode.has("productCodes") && jsonNode.get("productCodes").isArray()) {
-                    List<String> productCodes = new ArrayList<>();
-                    jsonNode.get("productCodes").forEach(node -> {
-                        productCodes.add(node.asText());
-                    });
-                    // Filter products by the codes returned from AI
-                    if (!productCodes.isEmpty()) {
-                        productDetails = allProducts.stream()
-                                .filter(product -> productCodes.contains(product.getCodigoProducto()))
-                                .collect(Collectors.toList());
-                    }
-                }
-                information.put("response", productDetails);
-            } else if ("purchase".equals(requestType)) {
-                // Purchase request
-                information.put("type", "purchase");
-                List<Map<String, Object>> items = new ArrayList<>();
-                if (jsonNode.has("items") && jsonNode.get("items").isArray()) {
-                    jsonNode.get("items").forEach(node -> {
-                        if (node.has("name") && node.has("quantity")) {
-                            Map<String, Object> item = new HashMap<>();
-                            item.put("name", node.get("name").asText());
-                            item.put("quantity", node.get("quantity").asInt());
-                            items.add(item);
-                        }
-                    });
-                }
-                information.put("response", items);
-            } else {
-                // Fallback for unknown or unclear requests
-                information.put("type", "unknown");
-                information.put("response", message);
-            }
-            
-            return new ChatResponse(codigoCliente, message, information);
-            
+            completion = CompletionParser.parse(aiResponse);
         } catch (JsonProcessingException e) {
             // Log the parsing error for debugging
-            System.err.println("Failed to parse AI response as JSON: " + aiResponse);
-            System.err.println("Error: " + e.getMessage());
-            
+            logger.warn("Failed to parse AI response as JSON: {} ({})", aiResponse, e.getOriginalMessage());
+            metrics.recordParseFailure();
+
             // If not valid JSON, return a consistent response structure
-            Map<String, Object> information = new HashMap<>();
-            information.put("type", "unknown");
-            information.put("response", UNKNOWN_REQUEST_MESSAGE);
-            return new ChatResponse(codigoCliente, UNKNOWN_REQUEST_MESSAGE, information);
+            return unknownResponse(codigoCliente);
         }
+
+        String message = completion.getMessage() != null ? completion.getMessage() : "Processing your request";
+        ChatPayload information = switch (completion.getRequestType()) {
+            // Request for prices or stock - the products with the codes returned from AI, in catalog order and
+            // with their current stock
+            case REQUEST_INFO -> new ChatPayload.RequestInfo(productRepository.findByCodigosProducto(completion.getProductCodes()));
+            // Purchase request, executed by executePurchase
+            case PURCHASE -> new ChatPayload.PurchaseOrder(completion.getItems());
+            // Fallback for unknown or unclear requests
+            case UNKNOWN -> new ChatPayload.Unknown(message);
+        };
+        return new ChatResponse(codigoCliente, message, information);
     }
 
-    /**
-     * Build detailed product context with complete information for AI filtering
-     */
-    private String buildDetailedProductContext(List<Product> products) {
-        StringBuilder context = new StringBuilder();
-        
-        for (Product product : products) {
-            context.append(String.format(
-                "Code: %s, Type: %s, Name: %s, Stock: %d, Unit Price: %.2f, Wholesale Price: %.2f\n",
-                product.getCodigoProducto(),
-                product.getTipoProducto(),
-                product.getNombreProducto(),
-                product.getCantidadStock(),
-                product.getPrecioUnitario(),
-                product.getPrecioXMayor()
-            ));
-        }
-
-        return context.toString();
+    private static ChatResponse unknownResponse(String codigoCliente) {
+        return new ChatResponse(codigoCliente, UNKNOWN_REQUEST_MESSAGE, new ChatPayload.Unknown(UNKNOWN_REQUEST_MESSAGE));
     }
 }
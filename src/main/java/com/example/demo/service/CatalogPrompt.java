@@ -0,0 +1,51 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, ready-to-send system prompt rendered from a given version of the product catalog. Only the
+ * rendered text is kept, not the products, which stay in the repository's columns.
+ */
+public final class CatalogPrompt {
+    private final long version;
+    private final String systemMessage;
+    private final String instructions;
+    private final Map<String, String> productLines;
+
+    public CatalogPrompt(long version, String systemMessage, String instructions, Map<String, String> productLines) {
+        this.version = version;
+        this.systemMessage = systemMessage;
+        this.instructions = instructions;
+        this.productLines = Map.copyOf(productLines);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * System message carrying the complete catalog.
+     */
+    public String getSystemMessage() {
+        return systemMessage;
+    }
+
+    /**
+     * System message carrying only the given products, assembled from the lines pre-rendered
+     * for this catalog version.
+     */
+    public String getSystemMessage(List<Product> candidates) {
+        StringBuilder message = new StringBuilder(instructions.length() + candidates.size() * 128);
+        message.append(instructions).append("Relevant Product Catalog:\n");
+        for (Product product : candidates) {
+            String line = productLines.get(product.getCodigoProducto());
+            if (line != null) {
+                message.append(line);
+            }
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import com.example.demo.repository.ProductRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders the system prompt (static instructions plus the product catalog) once per catalog version.
+ * The rendered prompt is reused by every chat request until the {@link ProductRepository} contents change.
+ * Purchases do not re-render it: the stock it quotes is the stock at the last (re)load, while the products
+ * in chat responses are looked up with their current stock.
+ */
+@Component
+public class CatalogPromptProvider {
+    private static final String INSTRUCTIONS = "You are a helpful assistant for an e-commerce store that sells three types of products: perno, tuerca, and volanda. " +
+            "You have access to the complete product catalog below.\n\n" +
+            "Analyze the user's request and filter the products that match what the user is asking for.\n\n" +
+            "For requests about prices or stock information, respond with:\n" +
+            "{\n" +
+            "  \"message\": \"Estoy recuperando la información de precios y stock\",\n" +
+            "  \"requestType\": \"request_info\",\n" +
+            "  \"productCodes\": [\"P-001\", \"P-002\", \"V-005\", ...]\n" +
+            "}\n\n" +
+            "IMPORTANT: In productCodes, include ONLY the product codes (codigoProducto) of products that match the user's request. " +
+            "Analyze the user's message carefully and match against product names, types, sizes, and specifications.\n" +
+            "For example:\n" +
+            "- User asks for 'Perno Hexagonal 1/4x2' → return [\"P-001\"] if that product exists\n" +
+            "- User asks for 'volandas Planas M8' → return codes of all M8 flat volandas\n" +
+            "- User asks for multiple items → return codes of ALL matching products\n\n" +
+            "For purchase requests, respond with:\n" +
+            "{\n" +
+            "  \"message\": \"A natural message saying you're processing the purchase\",\n" +
+            "  \"requestType\": \"purchase\",\n" +
+            "  \"items\": [{\"name\": \"product1\", \"quantity\": 10}, {\"name\": \"product2\", \"quantity\": 5}, ...]\n" +
+            "}\n\n" +
+            "For unclear or unrelated requests, respond with:\n" +
+            "{\n" +
+            "  \"message\": \"" + AiService.UNKNOWN_REQUEST_MESSAGE + "\",\n" +
+            "  \"requestType\": \"unknown\"\n" +
+            "}\n\n" +
+            "Always write the \"message\" field first, so it can be shown to the user while the rest is generated.\n\n";
+
+    private final ProductRepository productRepository;
+    private volatile CatalogPrompt current;
+
+    public CatalogPromptProvider(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Returns the prompt for the current catalog version, rendering it only if the catalog changed
+     * since the last call.
+     */
+    public CatalogPrompt getCatalogPrompt() {
+        CatalogPrompt prompt = current;
+        if (prompt != null && prompt.getVersion() == productRepository.getVersion()) {
+            return prompt;
+        }
+        return render();
+    }
+
+    private synchronized CatalogPrompt render() {
+        // Read the version before the products: if the catalog changes in between, the prompt is
+        // tagged with the older version and simply rendered again on the next call.
+        long version = productRepository.getVersion();
+        CatalogPrompt prompt = current;
+        if (prompt != null && prompt.getVersion() == version) {
+            return prompt;
+        }
+        Map<String, String> productLines = new HashMap<>();
+        StringBuilder context = new StringBuilder();
+        for (Product product : productRepository.findAll()) {
+            String line = buildProductLine(product);
+            productLines.put(product.getCodigoProducto(), line);
+            context.append(line);
+        }
+        String systemMessage = INSTRUCTIONS + "Complete Product Catalog:\n" + context;
+        prompt = new CatalogPrompt(version, systemMessage, INSTRUCTIONS, productLines);
+        current = prompt;
+        return prompt;
+    }
+
+    /**
+     * Build detailed product context with complete information for AI filtering
+     */
+    String buildDetailedProductContext(List<Product> products) {
+        StringBuilder context = new StringBuilder();
+        
+        for (Product product : products) {
+            context.append(buildProductLine(product));
+        }
+
+        return context.toString();
+    }
+
+    private String buildProductLine(Product product) {
+        return String.format(
+            "Code: %s, Type: %s, Name: %s, Stock: %d, Unit Price: %.2f, Wholesale Price: %.2f\n",
+            product.getCodigoProducto(),
+            product.getTipoProducto(),
+            product.getNombreProducto(),
+            product.getCantidadStock(),
+            product.getPrecioUnitario(),
+            product.getPrecioXMayor()
+        );
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import com.example.demo.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Pre-filter stage ahead of the LLM call: picks the products whose names best match the user message
+ * so the prompt only carries the relevant part of the catalog.
+ *
+ * Each phrase of one to three consecutive words of the message is looked up with
+ * {@link ProductRepository#findByProductNameKeywords(List)}; a matching product scores the number of words
+ * in the phrase, so "plana m8" counts more than "plana" and "m8" alone.
+ */
+@Component
+public class CatalogRetriever {
+    private static final int MAX_PHRASE_WORDS = 3;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[\\s,;:!?¿¡()]+");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "de", "del", "la", "las", "el", "los", "un", "una", "unos", "unas", "y", "o", "en", "con", "por", "para",
+            "que", "me", "mi", "al", "es", "hay", "cual", "cuál", "cuanto", "cuánto", "cuesta", "precio", "precios",
+            "stock", "tienen", "tiene", "quiero", "necesito", "comprar", "dame", "favor", "hola");
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final int topN;
+    private final int minScore;
+
+    public CatalogRetriever(
+            ProductRepository productRepository,
+            @Value("${ai.catalog.pruning.enabled:true}") boolean enabled,
+            @Value("${ai.catalog.pruning.top-n:20}") int topN,
+            @Value("${ai.catalog.pruning.min-score:2}") int minScore) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.topN = topN;
+        this.minScore = minScore;
+    }
+
+    /**
+     * Returns up to top-N candidate products for the message, best match first. An empty list means
+     * the full catalog should be sent: pruning is disabled or no product scored at least min-score.
+     */
+    public List<Product> selectCandidates(String userMessage) {
+        if (!enabled || userMessage == null || userMessage.isBlank()) {
+            return List.of();
+        }
+
+        // Keyed by code: the repository returns a new Product instance on every lookup
+        Map<String, Product> products = new LinkedHashMap<>();
+        Map<String, Integer> scores = new HashMap<>();
+        for (Phrase phrase : extractPhrases(userMessage)) {
+            for (Product product : productRepository.findByProductNameKeywords(List.of(phrase.text))) {
+                products.putIfAbsent(product.getCodigoProducto(), product);
+                scores.merge(product.getCodigoProducto(), phrase.words, Integer::sum);
+            }
+        }
+
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.removeIf(entry -> entry.getValue() < minScore);
+        if (ranked.isEmpty()) {
+            return List.of();
+        }
+        ranked.sort(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()));
+
+        List<Product> candidates = new ArrayList<>(Math.min(topN, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < topN; i++) {
+            candidates.add(products.get(ranked.get(i).getKey()));
+        }
+        return candidates;
+    }
+
+    private List<Phrase> extractPhrases(String userMessage) {
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(userMessage.toLowerCase())) {
+            String normalized = ProductRepository.normalizeKeyword(word);
+            if (!normalized.isEmpty() && !STOP_WORDS.contains(normalized)) {
+                words.add(singular(normalized));
+            }
+        }
+
+        // Deduplicated so a repeated word does not inflate the score of the products it matches
+        Set<Phrase> phrases = new LinkedHashSet<>();
+        for (int start = 0; start < words.size(); start++) {
+            StringBuilder text = new StringBuilder();
+            for (int length = 1; length <= MAX_PHRASE_WORDS && start + length <= words.size(); length++) {
+                text.append(words.get(start + length - 1));
+                if (text.length() >= 2) {
+                    phrases.add(new Phrase(text.toString(), length));
+                }
+            }
+        }
+        return new ArrayList<>(phrases);
+    }
+
+    /**
+     * Strip a plural "s" so "pernos" or "planas" match the singular product names.
+     */
+    private String singular(String word) {
+        if (word.length() > 3 && word.endsWith("s") && Character.isLetter(word.charAt(word.length() - 2))) {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private record Phrase(String text, int words) {
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends the chat completions of {@link AiService#chat}. When enabled (ai.batch.enabled), requests arriving
+ * within ai.batch.max-wait of each other are sent as one completion: the catalog system prompt once, followed by
+ * the requests with an id each, and the model answers them as a list the completions are fanned back out from.
+ *
+ * The first request of a batch leads it: it waits until the batch holds ai.batch.max-size requests or its wait
+ * is over, then makes the call on its own thread while the other requests of the batch wait for their part, so
+ * no request is held longer than the latency budget before being sent. The batch size is capped so the answers
+ * of a batch fit in the completion tokens of one call. A batch of one is sent as a plain completion, and so is
+ * every request the model left out of a batch answer, or all of them when the batch call fails: each on the
+ * thread of its own request, so these retries run concurrently and none waits for another.
+ */
+@Component
+public class ChatBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ChatBatcher.class);
+
+    private static final String BATCH_INSTRUCTIONS = "You will receive several independent customer requests as a JSON array "
+            + "of objects with an \"id\" and a \"request\". Answer each request on its own, exactly as described above, "
+            + "and respond with a single JSON object of the form "
+            + "{\"responses\": [{\"id\": \"1\", \"message\": \"...\", \"requestType\": \"...\", ...}, ...]} "
+            + "holding one response, with its id, for every request.\n\n";
+
+    private final LlmClient llmClient;
+    private final AiMetrics metrics;
+    private final boolean enabled;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchClosed = lock.newCondition();
+    private Batch open;
+
+    public ChatBatcher(
+            LlmClient llmClient,
+            AiMetrics metrics,
+            @Value("${ai.batch.enabled:false}") boolean enabled,
+            @Value("${ai.batch.max-size:4}") int maxSize,
+            @Value("${ai.batch.max-wait:5ms}") Duration maxWait) {
+        this.llmClient = llmClient;
+        this.metrics = metrics;
+        this.maxSize = Math.min(maxSize, AiService.MAX_COMPLETION_TOKENS / AiService.MAX_TOKENS);
+        this.enabled = enabled && this.maxSize > 1;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Completion text answering {@code userContent} against the given catalog prompt, with the system message
+     * narrowed to {@code candidates} when there are any.
+     */
+    public String complete(CatalogPrompt catalogPrompt, List<Product> candidates, String userContent) {
+        if (!enabled) {
+            return completeAlone(catalogPrompt, candidates, userContent);
+        }
+        Item item = new Item(candidates, userContent);
+        Batch batch;
+        boolean leader;
+        lock.lock();
+        try {
+            if (open != null && open.catalogPrompt != catalogPrompt) {
+                // Requests against another catalog version cannot share a prompt
+                close(open);
+            }
+            leader = open == null;
+            if (leader) {
+                open = new Batch(catalogPrompt);
+            }
+            batch = open;
+            batch.items.add(item);
+            if (batch.items.size() >= maxSize) {
+                close(batch);
+            }
+            if (leader) {
+                awaitClose(batch);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (leader) {
+            try {
+                send(batch);
+            } finally {
+                // Whatever happened, no request of the batch is left waiting: those still unanswered go alone
+                batch.items.forEach(member -> member.completion.complete(null));
+            }
+        }
+        String completion;
+        try {
+            completion = item.completion.join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+        // Not answered by the batch: sent alone
+        return completion != null ? completion : completeAlone(catalogPrompt, candidates, userContent);
+    }
+
+    private void awaitClose(Batch batch) {
+        long remaining = maxWaitNanos;
+        try {
+            while (!batch.closed && remaining > 0) {
+                remaining = batchClosed.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!batch.closed) {
+            close(batch);
+        }
+    }
+
+    private void close(Batch batch) {
+        batch.closed = true;
+        if (open == batch) {
+            open = null;
+        }
+        batchClosed.signalAll();
+    }
+
+    /**
+     * Complete the requests of the batch with their part of the batch answer, or with null for those to send
+     * alone: the only request of a batch of one, those the answer left out, or all of them when the call fails.
+     * A call refused because too many are in flight fails them all instead: sent alone, each would be refused too.
+     */
+    private void send(Batch batch) {
+        List<Item> items = batch.items;
+        metrics.recordBatch(items.size());
+        if (items.size() == 1) {
+            items.get(0).completion.complete(null);
+            return;
+        }
+        Map<String, String> completions;
+        try {
+            completions = completeTogether(batch.catalogPrompt, items);
+        } catch (RateLimitedException e) {
+            items.forEach(item -> item.completion.completeExceptionally(e));
+            return;
+        } catch (RuntimeException e) {
+            logger.warn("Batch completion failed, sending its {} requests one by one ({})", items.size(), e.toString());
+            completions = Map.of();
+        }
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).completion.complete(completions.get(String.valueOf(i + 1)));
+        }
+    }
+
+    private String completeAlone(CatalogPrompt catalogPrompt, List<Product> candidates, String userContent) {
+        String systemMessage = candidates.isEmpty()
+                ? catalogPrompt.getSystemMessage()
+                : catalogPrompt.getSystemMessage(candidates);
+        return content(llmClient.createChatCompletion(
+                AiService.chatCompletionRequest(systemMessage, userContent, AiService.MAX_TOKENS)));
+    }
+
+    /**
+     * Completions of the batch by request id ("1", "2", ...), each shaped like the completion of a single
+     * request. Ids the model did not answer are missing, as are all of them when its answer is not valid JSON.
+     */
+    private Map<String, String> completeTogether(CatalogPrompt catalogPrompt, List<Item> items) {
+        // The system message covers the candidates of every request, or the whole catalog if one has none
+        Map<String, Product> candidates = new LinkedHashMap<>();
+        boolean fullCatalog = false;
+        ArrayNode requests = objectMapper.createArrayNode();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            fullCatalog |= item.candidates.isEmpty();
+            item.candidates.forEach(product -> candidates.putIfAbsent(product.getCodigoProducto(), product));
+            requests.addObject()
+                    .put("id", String.valueOf(i + 1))
+                    .put("request", item.userContent);
+        }
+        String systemMessage = fullCatalog
+                ? catalogPrompt.getSystemMessage()
+                : catalogPrompt.getSystemMessage(new ArrayList<>(candidates.values()));
+
+        String content = content(llmClient.createChatCompletion(AiService.chatCompletionRequest(
+                systemMessage + BATCH_INSTRUCTIONS, requests.toString(),
+                Math.min(AiService.MAX_TOKENS * items.size(), AiService.MAX_COMPLETION_TOKENS))));
+
+        Map<String, String> completions = new LinkedHashMap<>();
+        try {
+            for (JsonNode response : objectMapper.readTree(content).path("responses")) {
+                if (response instanceof ObjectNode responseObject && responseObject.hasNonNull("id")) {
+                    String id = responseObject.remove("id").asText();
+                    completions.putIfAbsent(id, responseObject.toString());
+                }
+            }
+        } catch (JsonProcessingException e) {
+            logger.warn("Failed to parse batch completion as JSON, sending its {} requests one by one ({})",
+                    items.size(), e.getOriginalMessage());
+        }
+        return completions;
+    }
+
+    private static String content(ChatCompletionResult chatCompletion) {
+        if (chatCompletion.getChoices() == null || chatCompletion.getChoices().isEmpty()) {
+            throw new RuntimeException("OpenAI API returned no response choices");
+        }
+        return chatCompletion.getChoices().get(0).getMessage().getContent();
+    }
+
+    private static final class Batch {
+        private final CatalogPrompt catalogPrompt;
+        private final List<Item> items = new ArrayList<>();
+        private boolean closed;
+
+        private Batch(CatalogPrompt catalogPrompt) {
+            this.catalogPrompt = catalogPrompt;
+        }
+    }
+
+    private static final class Item {
+        private final List<Product> candidates;
+        private final String userContent;
+        private final CompletableFuture<String> completion = new CompletableFuture<>();
+
+        private Item(List<Product> candidates, String userContent) {
+            this.candidates = candidates;
+            this.userContent = userContent;
+        }
+    }
+}
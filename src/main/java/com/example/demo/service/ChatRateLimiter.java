@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-client limit on the chat endpoints: each codigoCliente gets a token bucket of ai.rate-limit.burst
+ * requests, refilled at ai.rate-limit.requests-per-minute. A bucket is kept as its theoretical arrival time
+ * (GCRA), a single long updated by compare-and-set, so admitting a request never takes a lock. Buckets are only
+ * created for existing clients, which bounds their number.
+ *
+ * Meters: ai.chat.rate-limited (requests refused, by reason: client, or upstream when the LLM calls in flight
+ * are at ai.llm.max-concurrent-requests), ai.chat.rate-limit.clients (buckets) and ai.llm.in-flight.
+ */
+@Component
+public class ChatRateLimiter {
+    private final boolean enabled;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    public ChatRateLimiter(
+            MeterRegistry registry,
+            LlmClient llmClient,
+            @Value("${ai.rate-limit.enabled:true}") boolean enabled,
+            @Value("${ai.rate-limit.requests-per-minute:30}") int requestsPerMinute,
+            @Value("${ai.rate-limit.burst:10}") int burst) {
+        this(enabled, requestsPerMinute, burst, System::nanoTime);
+        FunctionCounter.builder("ai.chat.rate-limited", this, ChatRateLimiter::getRejectedRequests)
+                .description("Chat requests refused with 429")
+                .tag("reason", "client")
+                .register(registry);
+        FunctionCounter.builder("ai.chat.rate-limited", llmClient, LlmClient::getRejectedCalls)
+                .description("Chat requests refused with 429")
+                .tag("reason", "upstream")
+                .register(registry);
+        Gauge.builder("ai.chat.rate-limit.clients", buckets, Map::size)
+                .description("Clients with a rate limit bucket")
+                .register(registry);
+        Gauge.builder("ai.llm.in-flight", llmClient, LlmClient::getInFlight)
+                .description("OpenAI calls in flight")
+                .register(registry);
+    }
+
+    ChatRateLimiter(boolean enabled, int requestsPerMinute, int burst, LongSupplier nanoClock) {
+        if (requestsPerMinute < 1 || burst < 1) {
+            throw new IllegalArgumentException("ai.rate-limit.requests-per-minute and ai.rate-limit.burst must be at least 1");
+        }
+        this.enabled = enabled;
+        this.emissionIntervalNanos = Duration.ofMinutes(1).toNanos() / requestsPerMinute;
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Take a request from the client's bucket, or fail with a {@link RateLimitedException} carrying the wait
+     * until the bucket has one again.
+     */
+    public void acquire(String codigoCliente) {
+        if (!enabled) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        AtomicLong theoreticalArrival = buckets.get(codigoCliente);
+        if (theoreticalArrival == null) {
+            theoreticalArrival = buckets.computeIfAbsent(codigoCliente, code -> new AtomicLong(now));
+        }
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now);
+            long wait = next - burstToleranceNanos - now;
+            if (wait > 0) {
+                rejectedRequests.incrementAndGet();
+                throw new RateLimitedException("Too many chat requests from " + codigoCliente, Duration.ofNanos(wait));
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next + emissionIntervalNanos)) {
+                return;
+            }
+        }
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of LLM completions with a time-to-live, keyed on the user message normalized with
+ * {@link ProductRepository#normalizeKeyword(String)} and on the catalog version the completion was produced
+ * for. Only the raw completion is cached: responses are rebuilt from it for each caller, so they carry the
+ * caller's client code and the live product data.
+ */
+@Component
+public class ChatResponseCache {
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ChatResponseCache(
+            @Value("${ai.cache.enabled:true}") boolean enabled,
+            @Value("${ai.cache.max-entries:1000}") int maxEntries,
+            @Value("${ai.cache.ttl:10m}") Duration ttl) {
+        this.enabled = enabled && maxEntries > 0;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public Optional<String> get(String userMessage, long catalogVersion) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        String key = key(userMessage, catalogVersion);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.createdAt <= ttlNanos) {
+                hits.incrementAndGet();
+                return Optional.of(entry.completion);
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    public void put(String userMessage, long catalogVersion, String completion) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = new Entry(completion, System.nanoTime());
+        synchronized (entries) {
+            entries.put(key(userMessage, catalogVersion), entry);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    static String key(String userMessage, long catalogVersion) {
+        return catalogVersion + ":" + ProductRepository.normalizeKeyword(userMessage);
+    }
+
+    private record Entry(String completion, long createdAt) {
+    }
+}
@@ -15,6 +15,13 @@ public class ClientService {
         this.clientRepository = clientRepository;
     }
 
+    /**
+     * Version of the client data, changing whenever any client may have changed.
+     */
+    public long getDataVersion() {
+        return clientRepository.getVersion();
+    }
+
     public List<Client> getAllClients() {
         return clientRepository.findAll();
     }
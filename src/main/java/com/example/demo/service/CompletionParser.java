@@ -0,0 +1,152 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatPayload;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the JSON object of a chat completion token by token into a {@link ParsedCompletion}, without building
+ * a tree and skipping the fields it does not know. Models often wrap the object in a markdown code fence or
+ * put a sentence before it, so the object is looked for from each '{' of the completion: the first one
+ * that parses into an object with a requestType wins.
+ */
+final class CompletionParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private CompletionParser() {
+    }
+
+    static ParsedCompletion parse(String completion) throws JsonProcessingException {
+        char[] chars = completion.toCharArray();
+        int start = completion.indexOf('{');
+        if (start < 0) {
+            return read(chars, 0);
+        }
+        ParsedCompletion firstObject = null;
+        JsonProcessingException failure = null;
+        for (; start >= 0; start = completion.indexOf('{', start + 1)) {
+            ParsedCompletion candidate;
+            try {
+                candidate = read(chars, start);
+            } catch (JsonProcessingException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                continue;
+            }
+            if (candidate.hasRequestType()) {
+                return candidate;
+            }
+            // An object without a requestType only counts when it is the outermost one: an object nested in
+            // a truncated completion, like a purchase item, is not the answer
+            if (firstObject == null && failure == null) {
+                firstObject = candidate;
+            }
+        }
+        if (firstObject != null) {
+            return firstObject;
+        }
+        throw failure;
+    }
+
+    private static ParsedCompletion read(char[] chars, int offset) throws JsonProcessingException {
+        try (JsonParser parser = JSON_FACTORY.createParser(chars, offset, chars.length - offset)) {
+            String requestType = null;
+            String message = null;
+            List<String> productCodes = List.of();
+            List<ChatPayload.OrderLine> items = List.of();
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "requestType" -> requestType = text(parser);
+                        case "message" -> message = text(parser);
+                        case "productCodes" -> productCodes = value == JsonToken.START_ARRAY ? readCodes(parser) : skip(parser);
+                        case "items" -> items = value == JsonToken.START_ARRAY ? readItems(parser) : skip(parser);
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
+            return new ParsedCompletion(requestType, message, productCodes, items);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // Not expected when reading from memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> readCodes(JsonParser parser) throws IOException {
+        List<String> codes = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            codes.add(text(parser));
+        }
+        return codes;
+    }
+
+    private static List<ChatPayload.OrderLine> readItems(JsonParser parser) throws IOException {
+        List<ChatPayload.OrderLine> items = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String name = null;
+            boolean hasQuantity = false;
+            int quantity = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name" -> name = text(parser);
+                    case "quantity" -> {
+                        quantity = intValue(parser);
+                        hasQuantity = true;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            // Lines missing the name or the quantity are dropped
+            if (name != null && hasQuantity) {
+                items.add(new ChatPayload.OrderLine(name, quantity));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * The current value as text, the way {@code JsonNode.asText()} renders it: scalars as written, null as
+     * "null", and arrays and objects as an empty string.
+     */
+    private static String text(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    /**
+     * The current value as an int, the way {@code JsonNode.asInt()} converts it.
+     */
+    private static int intValue(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return 0;
+        }
+        return parser.getValueAsInt(0);
+    }
+
+    private static <T> List<T> skip(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return List.of();
+    }
+}
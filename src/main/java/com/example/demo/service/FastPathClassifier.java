@@ -0,0 +1,136 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatPayload;
+import com.example.demo.model.ChatResponse;
+import com.example.demo.model.Product;
+import com.example.demo.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Rule-based classifier ahead of the LLM that answers unambiguous price/stock questions on its own.
+ *
+ * A message is answered here only when every word of it is either a product code ("P-001"), part of the
+ * exact name of a product, or a filler/price/stock word ("precio", "stock", "de"...). Anything else, and any
+ * hint of a purchase, is left to the LLM.
+ */
+@Component
+public class FastPathClassifier {
+    static final String REQUEST_INFO_MESSAGE = "Estoy recuperando la información de precios y stock";
+
+    private static final int MAX_WORDS = 40;
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[\\s,;:!?¿¡()]+");
+    private static final Pattern PRODUCT_CODE = Pattern.compile("[a-z]+-\\d+");
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "precio", "precios", "stock", "cuanto", "cuánto", "cuesta", "cuestan", "vale", "valen", "cual", "cuál",
+            "es", "son", "el", "la", "los", "las", "de", "del", "y", "e", "hay", "tienen", "tiene", "disponible",
+            "disponibles", "disponibilidad", "info", "informacion", "información", "sobre", "producto", "productos",
+            "codigo", "código", "me", "dame", "das", "por", "favor", "hola", "cantidad", "unidades", "en");
+    private static final Set<String> PURCHASE_WORDS = Set.of(
+            "comprar", "compra", "compro", "quiero", "pedido", "pedir", "pido", "ordenar", "orden", "llevar",
+            "llevo", "necesito", "reservar", "enviar", "envíen", "envien", "mandar");
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final AtomicLong served = new AtomicLong();
+
+    public FastPathClassifier(
+            ProductRepository productRepository,
+            @Value("${ai.fast-path.enabled:true}") boolean enabled) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Answer the message without the LLM when it is a high-confidence price/stock lookup. The response has
+     * the same shape as a "request_info" response parsed from the LLM.
+     */
+    public Optional<ChatResponse> tryAnswer(String userMessage, String codigoCliente) {
+        if (!enabled || userMessage == null) {
+            return Optional.empty();
+        }
+        List<String> words = splitWords(userMessage);
+        if (words.isEmpty() || words.size() > MAX_WORDS) {
+            return Optional.empty();
+        }
+
+        // Keyed by code: the repository returns a new Product instance on every lookup
+        Map<String, Product> products = new LinkedHashMap<>();
+        int position = 0;
+        while (position < words.size()) {
+            String word = words.get(position);
+            if (PURCHASE_WORDS.contains(word)) {
+                return Optional.empty();
+            }
+            if (PRODUCT_CODE.matcher(word).matches()) {
+                Optional<Product> product = productRepository.findByCodigoProducto(word);
+                if (product.isEmpty()) {
+                    return Optional.empty();
+                }
+                products.putIfAbsent(product.get().getCodigoProducto(), product.get());
+                position++;
+                continue;
+            }
+            int nameEnd = longestProductName(words, position, products);
+            if (nameEnd > position) {
+                position = nameEnd;
+            } else if (FILLER_WORDS.contains(word)) {
+                position++;
+            } else {
+                return Optional.empty();
+            }
+        }
+        if (products.isEmpty()) {
+            return Optional.empty();
+        }
+
+        served.incrementAndGet();
+        return Optional.of(new ChatResponse(codigoCliente, REQUEST_INFO_MESSAGE,
+                new ChatPayload.RequestInfo(new ArrayList<>(products.values()))));
+    }
+
+    /**
+     * Number of requests answered without calling the LLM.
+     */
+    public long getServedCount() {
+        return served.get();
+    }
+
+    /**
+     * Find the longest run of words starting at {@code start} that is the exact name of a product, add the
+     * matching products and return the index after the run, or {@code start} when there is none.
+     */
+    private int longestProductName(List<String> words, int start, Map<String, Product> products) {
+        for (int end = words.size(); end > start; end--) {
+            List<Product> matches = productRepository.findByProductName(String.join("", words.subList(start, end)));
+            if (!matches.isEmpty()) {
+                matches.forEach(product -> products.putIfAbsent(product.getCodigoProducto(), product));
+                return end;
+            }
+        }
+        return start;
+    }
+
+    private List<String> splitWords(String userMessage) {
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(userMessage.toLowerCase())) {
+            String normalized = ProductRepository.normalizeKeyword(word);
+            if (normalized.endsWith(".")) {
+                normalized = normalized.substring(0, normalized.length() - 1);
+            }
+            if (!normalized.isEmpty()) {
+                words.add(normalized);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.theokanning.openai.OpenAiHttpException;
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.completion.chat.ChatCompletionChunk;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.service.OpenAiService;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import retrofit2.HttpException;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The OpenAI client used by {@link AiService}, configured under ai.llm.*: the HTTP client keeps a pool of
+ * keep-alive connections, every call has a connect/read timeout and an overall deadline, transient failures
+ * are retried by {@link RetryInterceptor}, and a {@link CircuitBreaker} stops calling the API while it keeps
+ * failing. Any call that does not get an answer fails with {@link LlmUnavailableException}; other API errors
+ * (a rejected request, a bad key) are thrown as the library's {@link OpenAiHttpException}. At most
+ * ai.llm.max-concurrent-requests calls are in flight at once; a call beyond that fails right away with a
+ * {@link RateLimitedException} instead of waiting for a connection.
+ */
+@Component
+public class LlmClient implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(LlmClient.class);
+    private static final Duration IN_FLIGHT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final OkHttpClient httpClient;
+    private final OpenAiService openAiService;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final AtomicLong rejectedCalls = new AtomicLong();
+
+    public LlmClient(
+            @Value("${openai.api.key}") String apiKey,
+            @Value("${ai.llm.base-url:https://api.openai.com/}") String baseUrl,
+            @Value("${ai.llm.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${ai.llm.read-timeout:30s}") Duration readTimeout,
+            @Value("${ai.llm.call-timeout:60s}") Duration callTimeout,
+            @Value("${ai.llm.max-concurrent-requests:64}") int maxConcurrentRequests,
+            @Value("${ai.llm.pool.max-idle-connections:16}") int maxIdleConnections,
+            @Value("${ai.llm.pool.keep-alive:5m}") Duration keepAlive,
+            @Value("${ai.llm.retry.max-retries:2}") int maxRetries,
+            @Value("${ai.llm.retry.base-delay:250ms}") Duration retryBaseDelay,
+            @Value("${ai.llm.retry.max-delay:10s}") Duration retryMaxDelay,
+            @Value("${ai.llm.circuit-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${ai.llm.circuit-breaker.open-duration:30s}") Duration openDuration) {
+        if (apiKey == null || apiKey.trim().isEmpty() || apiKey.equals("your-api-key-here")) {
+            throw new IllegalArgumentException("OpenAI API key must be configured. Set OPENAI_API_KEY environment variable.");
+        }
+        // Streamed completions run as asynchronous calls, which the dispatcher otherwise caps at 5 per host
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConcurrentRequests);
+        dispatcher.setMaxRequestsPerHost(maxConcurrentRequests);
+        this.httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("Authorization", "Bearer " + apiKey)
+                        .build()))
+                .addInterceptor(new RetryInterceptor(maxRetries, retryBaseDelay, retryMaxDelay, callTimeout))
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .callTimeout(callTimeout)
+                .build();
+        ObjectMapper objectMapper = OpenAiService.defaultObjectMapper();
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(httpClient)
+                .addConverterFactory(JacksonConverterFactory.create(objectMapper))
+                .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+                .build();
+        this.openAiService = new OpenAiService(retrofit.create(OpenAiApi.class), httpClient.dispatcher().executorService());
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.maxInFlight = maxConcurrentRequests;
+        this.inFlight = new Semaphore(maxConcurrentRequests);
+    }
+
+    /**
+     * Client of the OpenAI API with the default settings, e.g. for the benchmarks.
+     */
+    LlmClient(String apiKey) {
+        this(apiKey, "https://api.openai.com/", Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(60),
+                64, 16, Duration.ofMinutes(5), 2, Duration.ofMillis(250), Duration.ofSeconds(10), 5, Duration.ofSeconds(30));
+    }
+
+    public ChatCompletionResult createChatCompletion(ChatCompletionRequest request) {
+        acquire();
+        try {
+            ChatCompletionResult result = openAiService.createChatCompletion(request);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            throw onFailure(e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Stream a completion, handing each chunk to {@code onChunk} as it arrives, and return once it is done.
+     * An exception thrown by {@code onChunk} ends the stream and is rethrown as is; it says nothing about the API.
+     */
+    public void streamChatCompletion(ChatCompletionRequest request, Consumer<ChatCompletionChunk> onChunk) {
+        acquire();
+        try {
+            openAiService.streamChatCompletion(request).blockingForEach(chunk -> {
+                try {
+                    onChunk.accept(chunk);
+                } catch (RuntimeException e) {
+                    throw new ConsumerException(e);
+                }
+            });
+            circuitBreaker.onSuccess();
+        } catch (ConsumerException e) {
+            circuitBreaker.onSuccess();
+            throw (RuntimeException) e.getCause();
+        } catch (RuntimeException e) {
+            throw onFailure(e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Calls currently in flight.
+     */
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Calls refused so far because {@code ai.llm.max-concurrent-requests} were already in flight.
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private void acquire() {
+        if (!inFlight.tryAcquire()) {
+            rejectedCalls.incrementAndGet();
+            throw new RateLimitedException("Too many OpenAI calls in flight", IN_FLIGHT_RETRY_AFTER);
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            inFlight.release();
+            throw new LlmUnavailableException("OpenAI circuit breaker is open");
+        }
+    }
+
+    private RuntimeException onFailure(RuntimeException e) {
+        int statusCode = e instanceof OpenAiHttpException openAiException ? openAiException.statusCode
+                : e instanceof HttpException httpException ? httpException.code()
+                : -1;
+        if (statusCode > 0 && !RetryInterceptor.isRetryable(statusCode)) {
+            // The API answered; the request itself was refused
+            circuitBreaker.onSuccess();
+            return e;
+        }
+        circuitBreaker.onFailure();
+        logger.warn("OpenAI call failed (circuit {}): {}", circuitBreaker.getState(), e.toString());
+        return new LlmUnavailableException("OpenAI call failed: " + e.getMessage(), e);
+    }
+
+    @Override
+    public void destroy() {
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * Carries an exception of the chunk consumer through the stream, to tell it apart from a failed call.
+     */
+    private static final class ConsumerException extends RuntimeException {
+        private ConsumerException(RuntimeException cause) {
+            super(cause);
+        }
+    }
+}
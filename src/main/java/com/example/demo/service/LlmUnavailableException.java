@@ -0,0 +1,15 @@
+package com.example.demo.service;
+
+/**
+ * Thrown by {@link LlmClient} when the LLM could not be reached: the circuit is open, the call timed out,
+ * or it still failed with a transient error (429, 5xx, I/O) after the retries.
+ */
+public class LlmUnavailableException extends RuntimeException {
+    public LlmUnavailableException(String message) {
+        super(message);
+    }
+
+    public LlmUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
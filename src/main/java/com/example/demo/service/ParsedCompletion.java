@@ -0,0 +1,66 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatPayload;
+
+import java.util.List;
+
+/**
+ * What a chat completion asked for: its request type and message, with the product codes of a request_info
+ * completion or the items of a purchase completion.
+ */
+final class ParsedCompletion {
+
+    enum RequestType {
+        REQUEST_INFO,
+        PURCHASE,
+        UNKNOWN;
+
+        static RequestType of(String name) {
+            return switch (name) {
+                case "request_info" -> REQUEST_INFO;
+                case "purchase" -> PURCHASE;
+                default -> UNKNOWN;
+            };
+        }
+    }
+
+    private final RequestType requestType;
+    private final boolean requestTypeGiven;
+    private final String message;
+    private final List<String> productCodes;
+    private final List<ChatPayload.OrderLine> items;
+
+    ParsedCompletion(String requestType, String message, List<String> productCodes, List<ChatPayload.OrderLine> items) {
+        this.requestType = requestType == null ? RequestType.UNKNOWN : RequestType.of(requestType);
+        this.requestTypeGiven = requestType != null;
+        this.message = message;
+        this.productCodes = productCodes;
+        this.items = items;
+    }
+
+    RequestType getRequestType() {
+        return requestType;
+    }
+
+    /**
+     * Whether the completion had a requestType field at all.
+     */
+    boolean hasRequestType() {
+        return requestTypeGiven;
+    }
+
+    /**
+     * The message field, or null when the completion had none.
+     */
+    String getMessage() {
+        return message;
+    }
+
+    List<String> getProductCodes() {
+        return productCodes;
+    }
+
+    List<ChatPayload.OrderLine> getItems() {
+        return items;
+    }
+}
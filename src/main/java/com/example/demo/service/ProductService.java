@@ -14,6 +14,13 @@ public class ProductService {
         this.productRepository = productRepository;
     }
 
+    /**
+     * Version of the catalog, changing whenever any product (including its stock) may have changed.
+     */
+    public long getDataVersion() {
+        return productRepository.getStockVersion();
+    }
+
     public List<Product> getProductsByType(String tipoProducto) {
         return productRepository.findByTipoProducto(tipoProducto);
     }
@@ -0,0 +1,12 @@
+package com.example.demo.service;
+
+/**
+ * A purchase that cannot be executed: an item does not match exactly one product, or there is not
+ * enough stock. The message is meant for the customer.
+ */
+public class PurchaseRejectedException extends RuntimeException {
+
+    public PurchaseRejectedException(String message) {
+        super(message);
+    }
+}
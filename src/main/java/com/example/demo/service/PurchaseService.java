@@ -0,0 +1,123 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Client;
+import com.example.demo.model.CompletedPurchase;
+import com.example.demo.model.Product;
+import com.example.demo.model.PurchaseItem;
+import com.example.demo.repository.CompletedPurchaseRepository;
+import com.example.demo.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Executes the purchases requested through the chat: resolves each requested item to a product, takes the
+ * quantities out of the stock all or nothing, prices them and records the {@link CompletedPurchase}.
+ * Lines of at least purchase.wholesale-min-quantity units are charged the wholesale price (precioXMayor).
+ */
+@Service
+public class PurchaseService {
+    private static final Pattern PRODUCT_CODE = Pattern.compile("[A-Za-z]+-\\d+");
+
+    private final ProductRepository productRepository;
+    private final CompletedPurchaseRepository purchaseRepository;
+    private final int wholesaleMinQuantity;
+
+    public PurchaseService(
+            ProductRepository productRepository,
+            CompletedPurchaseRepository purchaseRepository,
+            @Value("${purchase.wholesale-min-quantity:300}") int wholesaleMinQuantity) {
+        this.productRepository = productRepository;
+        this.purchaseRepository = purchaseRepository;
+        this.wholesaleMinQuantity = wholesaleMinQuantity;
+    }
+
+    /**
+     * Buy the given quantities for the client. Items are product codes or product names, as returned by the LLM.
+     *
+     * @throws PurchaseRejectedException when an item does not match exactly one product, a quantity is not
+     *         positive or a product does not have enough stock; nothing is taken from the stock in that case
+     */
+    public CompletedPurchase purchase(Client client, Map<String, Integer> quantitiesByItem) {
+        if (quantitiesByItem.isEmpty()) {
+            throw new PurchaseRejectedException("No indicaste qué productos deseas comprar.");
+        }
+
+        Map<String, Product> products = new LinkedHashMap<>();
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        quantitiesByItem.forEach((item, quantity) -> {
+            if (quantity == null || quantity <= 0) {
+                throw new PurchaseRejectedException("La cantidad de \"" + item + "\" debe ser mayor que cero.");
+            }
+            Product product = resolve(item).orElseThrow(() -> new PurchaseRejectedException(
+                    "No pude identificar el producto \"" + item + "\". ¿Puedes indicar su código o nombre completo?"));
+            products.putIfAbsent(product.getCodigoProducto(), product);
+            quantities.merge(product.getCodigoProducto(), quantity, Integer::sum);
+        });
+
+        if (!productRepository.reserveStock(quantities)) {
+            throw new PurchaseRejectedException(insufficientStockMessage(quantities));
+        }
+
+        List<PurchaseItem> items = new ArrayList<>(quantities.size());
+        double total = 0;
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            int quantity = entry.getValue();
+            double price = quantity >= wholesaleMinQuantity ? product.getPrecioXMayor() : product.getPrecioUnitario();
+            double subtotal = roundToCents(price * quantity);
+            items.add(new PurchaseItem(product.getCodigoProducto(), product.getNombreProducto(), quantity, price, subtotal));
+            total += subtotal;
+        }
+
+        CompletedPurchase purchase = new CompletedPurchase(null, client.getCodigoCliente(), client.getNombreCompleto(),
+                LocalDate.now().toString(), items, roundToCents(total));
+        try {
+            return purchaseRepository.save(purchase);
+        } catch (RuntimeException e) {
+            productRepository.releaseStock(quantities);
+            throw e;
+        }
+    }
+
+    /**
+     * The product an item refers to: a product code, an exact product name, or keywords matching a single product.
+     */
+    private Optional<Product> resolve(String item) {
+        if (item == null || item.isBlank()) {
+            return Optional.empty();
+        }
+        String trimmed = item.trim();
+        if (PRODUCT_CODE.matcher(trimmed).matches()) {
+            return productRepository.findByCodigoProducto(trimmed);
+        }
+        List<Product> byName = productRepository.findByProductName(trimmed);
+        if (byName.size() == 1) {
+            return Optional.of(byName.get(0));
+        }
+        List<Product> byKeywords = productRepository.findByProductNameKeywords(List.of(trimmed));
+        return byKeywords.size() == 1 ? Optional.of(byKeywords.get(0)) : Optional.empty();
+    }
+
+    private String insufficientStockMessage(Map<String, Integer> quantities) {
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            Optional<Product> product = productRepository.findByCodigoProducto(entry.getKey());
+            if (product.isPresent() && product.get().getCantidadStock() < entry.getValue()) {
+                return "No hay stock suficiente de " + product.get().getNombreProducto()
+                        + ": quedan " + product.get().getCantidadStock() + " unidades.";
+            }
+        }
+        return "No hay stock suficiente para completar la compra.";
+    }
+
+    private static double roundToCents(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
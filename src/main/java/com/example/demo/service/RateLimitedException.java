@@ -0,0 +1,20 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+
+/**
+ * A chat request refused by a rate limit: its client sent too many requests, or too many LLM calls are already
+ * in flight. {@link #getRetryAfter()} is when trying again may succeed.
+ */
+public class RateLimitedException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public RateLimitedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries a call that failed with 429, a 5xx or an I/O error, up to {@code maxRetries} times. The wait before
+ * each retry is the server's Retry-After (retry-after-ms, delta-seconds or an HTTP date) when it sent one,
+ * otherwise a full-jitter exponential backoff from {@code baseDelay}. A retry is only made if its wait fits in
+ * both {@code maxDelay} and what is left of the call deadline; otherwise the last response or error is returned
+ * as is. A call cancelled by its deadline is never retried.
+ */
+final class RetryInterceptor implements Interceptor {
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long deadlineMillis;
+
+    RetryInterceptor(int maxRetries, Duration baseDelay, Duration maxDelay, Duration deadline) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+        this.deadlineMillis = deadline.isZero() ? Long.MAX_VALUE : deadline.toMillis();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        long start = System.currentTimeMillis();
+        for (int attempt = 0; ; attempt++) {
+            Response response;
+            try {
+                response = chain.proceed(chain.request());
+            } catch (IOException e) {
+                long delay = backoff(attempt);
+                if (chain.call().isCanceled() || !canRetry(attempt, start, delay)) {
+                    throw e;
+                }
+                sleep(delay);
+                continue;
+            }
+            if (!isRetryable(response.code())) {
+                return response;
+            }
+            long retryAfter = retryAfterMillis(response);
+            long delay = retryAfter >= 0 ? retryAfter : backoff(attempt);
+            if (!canRetry(attempt, start, delay)) {
+                return response;
+            }
+            response.close();
+            sleep(delay);
+        }
+    }
+
+    static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private boolean canRetry(int attempt, long start, long delay) {
+        return attempt < maxRetries
+                && delay <= maxDelayMillis
+                && System.currentTimeMillis() - start + delay < deadlineMillis;
+    }
+
+    private long backoff(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Wait the response asks for in milliseconds, or -1 when it has no (valid) Retry-After.
+     */
+    static long retryAfterMillis(Response response) {
+        String millis = response.header("retry-after-ms");
+        if (millis != null) {
+            try {
+                return Math.max(0, (long) Double.parseDouble(millis.trim()));
+            } catch (NumberFormatException e) {
+                // Fall back to Retry-After
+            }
+        }
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // Not delta-seconds, so an HTTP date
+        }
+        try {
+            ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, retryAt.toInstant().toEpochMilli() - System.currentTimeMillis());
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call, and callers arriving while it
+ * is in flight wait for and share its result, or its exception. Nothing is kept once the call is done.
+ */
+final class SingleFlight<T> {
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    Result<T> run(String key, Supplier<T> call) {
+        CompletableFuture<T> own = new CompletableFuture<>();
+        CompletableFuture<T> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            return new Result<>(join(running), true);
+        }
+        try {
+            T value = call.get();
+            own.complete(value);
+            return new Result<>(value, false);
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    int size() {
+        return inFlight.size();
+    }
+
+    private static <T> T join(CompletableFuture<T> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    static final class Result<T> {
+        private final T value;
+        private final boolean shared;
+
+        private Result(T value, boolean shared) {
+            this.value = value;
+            this.shared = shared;
+        }
+
+        T getValue() {
+            return value;
+        }
+
+        /**
+         * Whether the value came from a call another caller had in flight.
+         */
+        boolean isShared() {
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+/**
+ * Incrementally extracts the value of the "message" field from a JSON completion that arrives in chunks,
+ * so its text can be forwarded before the whole completion has been generated. The full completion is
+ * kept for the final parse.
+ */
+class StreamingMessageExtractor {
+    private static final String MESSAGE_KEY = "\"message\"";
+
+    private enum State { SEARCHING_KEY, EXPECTING_COLON, EXPECTING_VALUE, IN_VALUE, DONE }
+
+    private final StringBuilder completion = new StringBuilder();
+    private State state = State.SEARCHING_KEY;
+    private int position;
+
+    /**
+     * Append the next chunk of the completion and return the message text decoded from it, which is
+     * empty when the chunk carries no (complete) message characters.
+     */
+    String append(String chunk) {
+        completion.append(chunk);
+        StringBuilder text = new StringBuilder();
+        while (position < completion.length()) {
+            switch (state) {
+                case SEARCHING_KEY -> {
+                    int keyStart = completion.indexOf(MESSAGE_KEY, position);
+                    if (keyStart < 0) {
+                        // Keep the tail in case the key is split across chunks
+                        position = Math.max(position, completion.length() - MESSAGE_KEY.length() + 1);
+                        return text.toString();
+                    }
+                    position = keyStart + MESSAGE_KEY.length();
+                    state = State.EXPECTING_COLON;
+                }
+                case EXPECTING_COLON -> {
+                    char c = completion.charAt(position);
+                    if (c == ':') {
+                        state = State.EXPECTING_VALUE;
+                        position++;
+                    } else if (Character.isWhitespace(c)) {
+                        position++;
+                    } else {
+                        // "message" was a value, not a key
+                        state = State.SEARCHING_KEY;
+                    }
+                }
+                case EXPECTING_VALUE -> {
+                    char c = completion.charAt(position);
+                    if (c == '"') {
+                        state = State.IN_VALUE;
+                        position++;
+                    } else if (Character.isWhitespace(c)) {
+                        position++;
+                    } else {
+                        state = State.SEARCHING_KEY;
+                    }
+                }
+                case IN_VALUE -> {
+                    char c = completion.charAt(position);
+                    if (c == '"') {
+                        state = State.DONE;
+                        position++;
+                    } else if (c != '\\') {
+                        text.append(c);
+                        position++;
+                    } else if (!appendEscape(text)) {
+                        // Incomplete escape sequence, wait for the next chunk
+                        return text.toString();
+                    }
+                }
+                case DONE -> position = completion.length();
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * The completion received so far.
+     */
+    String getCompletion() {
+        return completion.toString();
+    }
+
+    private boolean appendEscape(StringBuilder text) {
+        if (position + 1 >= completion.length()) {
+            return false;
+        }
+        char escaped = completion.charAt(position + 1);
+        if (escaped == 'u') {
+            if (position + 6 > completion.length()) {
+                return false;
+            }
+            String hex = completion.substring(position + 2, position + 6);
+            try {
+                text.append((char) Integer.parseInt(hex, 16));
+            } catch (NumberFormatException e) {
+                text.append("\\u").append(hex);
+            }
+            position += 6;
+            return true;
+        }
+        switch (escaped) {
+            case 'n' -> text.append('\n');
+            case 't' -> text.append('\t');
+            case 'r' -> text.append('\r');
+            case 'b' -> text.append('\b');
+            case 'f' -> text.append('\f');
+            default -> text.append(escaped);
+        }
+        position += 2;
+        return true;
+    }
+}
@@ -1,24 +1,39 @@
 package com.example.demo.controller;
 
+import com.example.demo.model.ChatPayload;
 import com.example.demo.model.ChatResponse;
 import com.example.demo.model.Client;
+import com.example.demo.model.Product;
+import com.example.demo.service.AiMetrics;
 import com.example.demo.service.AiService;
+import com.example.demo.service.ChatRateLimiter;
 import com.example.demo.service.ClientService;
+import com.example.demo.service.RateLimitedException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -34,13 +49,19 @@ class AiControllerTest {
     @MockBean
     private ClientService clientService;
 
+    @MockBean
+    private AiMetrics aiMetrics;
+
+    @MockBean
+    private ChatRateLimiter rateLimiter;
+
     @Test
     void testChat_WithValidMessage() throws Exception {
         // Arrange
         Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
-        Map<String, Object> information = new HashMap<>();
-        information.put("type", "request_info");
-        information.put("response", List.of("perno", "tuerca"));
+        ChatPayload information = new ChatPayload.RequestInfo(List.of(
+                new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38),
+                new Product("T-001", "tuerca", "Tuerca Hexagonal 1/4\" Acero Zincado", 3000, 0.12, 0.10)));
 
         ChatResponse chatResponse = new ChatResponse(
                 "CLI-001",
@@ -49,27 +70,28 @@ class AiControllerTest {
         );
 
         when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
-        when(aiService.chat(anyString(), any(Client.class))).thenReturn(chatResponse);
+        when(aiService.chatAsync(anyString(), any(Client.class))).thenReturn(CompletableFuture.completedFuture(chatResponse));
 
         String requestBody = "{\"message\": \"What is the price of perno and tuerca?\", \"codigoCliente\": \"CLI-001\"}";
 
         // Act & Assert
-        mockMvc.perform(post("/api/ai/chat")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(requestBody))
+        performChat(requestBody)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.client").value("CLI-001"))
                 .andExpect(jsonPath("$.responseMessage").value("I'm retrieving the information about perno and tuerca for you."))
-                .andExpect(jsonPath("$.information.type").value("request_info"));
+                .andExpect(jsonPath("$.information.type").value("request_info"))
+                .andExpect(jsonPath("$.information.response[1].codigoProducto").value("T-001"))
+                .andExpect(jsonPath("$.information.response[1].precioUnitario").value(0.12));
     }
 
     @Test
     void testChat_WithProductQuery() throws Exception {
         // Arrange
         Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
-        Map<String, Object> information = new HashMap<>();
-        information.put("type", "request_info");
-        information.put("response", List.of("perno", "tuerca", "volanda"));
+        ChatPayload information = new ChatPayload.RequestInfo(List.of(
+                new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38),
+                new Product("T-001", "tuerca", "Tuerca Hexagonal 1/4\" Acero Zincado", 3000, 0.12, 0.10),
+                new Product("V-001", "volanda", "Volanda Plana 1/4\" Acero Zincado", 4000, 0.10, 0.08)));
 
         ChatResponse chatResponse = new ChatResponse(
                 "CLI-001",
@@ -78,14 +100,12 @@ class AiControllerTest {
         );
 
         when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
-        when(aiService.chat(anyString(), any(Client.class))).thenReturn(chatResponse);
+        when(aiService.chatAsync(anyString(), any(Client.class))).thenReturn(CompletableFuture.completedFuture(chatResponse));
 
         String requestBody = "{\"message\": \"What products do you have?\", \"codigoCliente\": \"CLI-001\"}";
 
         // Act & Assert
-        mockMvc.perform(post("/api/ai/chat")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(requestBody))
+        performChat(requestBody)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.client").value("CLI-001"))
                 .andExpect(jsonPath("$.responseMessage").value("Let me get you the stock information for perno, tuerca, and volanda."))
@@ -98,9 +118,7 @@ class AiControllerTest {
         String requestBody = "{\"message\": \"\", \"codigoCliente\": \"CLI-001\"}";
 
         // Act & Assert
-        mockMvc.perform(post("/api/ai/chat")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(requestBody))
+        performChat(requestBody)
                 .andExpect(status().isBadRequest());
     }
 
@@ -110,9 +128,7 @@ class AiControllerTest {
         String requestBody = "{\"message\": null, \"codigoCliente\": \"CLI-001\"}";
 
         // Act & Assert
-        mockMvc.perform(post("/api/ai/chat")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(requestBody))
+        performChat(requestBody)
                 .andExpect(status().isBadRequest());
     }
 
@@ -124,9 +140,7 @@ class AiControllerTest {
         String requestBody = "{\"message\": \"Hello\", \"codigoCliente\": \"CLI-999\"}";
 
         // Act & Assert
-        mockMvc.perform(post("/api/ai/chat")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(requestBody))
+        performChat(requestBody)
                 .andExpect(status().isNotFound());
     }
 
@@ -136,9 +150,7 @@ class AiControllerTest {
         String requestBody = "{\"message\": \"Hello\"}";
 
         // Act & Assert
-        mockMvc.perform(post("/api/ai/chat")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(requestBody))
+        performChat(requestBody)
                 .andExpect(status().isBadRequest());
     }
 
@@ -146,15 +158,9 @@ class AiControllerTest {
     void testChat_WithPurchaseRequest() throws Exception {
         // Arrange
         Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
-        Map<String, Object> information = new HashMap<>();
-        Map<String, Object> item1 = new HashMap<>();
-        item1.put("name", "perno");
-        item1.put("quantity", 10);
-        Map<String, Object> item2 = new HashMap<>();
-        item2.put("name", "tuerca");
-        item2.put("quantity", 5);
-        information.put("type", "purchase");
-        information.put("response", List.of(item1, item2));
+        ChatPayload information = new ChatPayload.PurchaseOrder(List.of(
+                new ChatPayload.OrderLine("perno", 10),
+                new ChatPayload.OrderLine("tuerca", 5)));
 
         ChatResponse chatResponse = new ChatResponse(
                 "CLI-001",
@@ -163,17 +169,158 @@ class AiControllerTest {
         );
 
         when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
-        when(aiService.chat(anyString(), any(Client.class))).thenReturn(chatResponse);
+        when(aiService.chatAsync(anyString(), any(Client.class))).thenReturn(CompletableFuture.completedFuture(chatResponse));
 
         String requestBody = "{\"message\": \"I want to buy 10 pernos and 5 tuercas\", \"codigoCliente\": \"CLI-001\"}";
 
         // Act & Assert
-        mockMvc.perform(post("/api/ai/chat")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(requestBody))
+        performChat(requestBody)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.client").value("CLI-001"))
                 .andExpect(jsonPath("$.responseMessage").value("I'm processing your purchase order for 10 pernos and 5 tuercas."))
-                .andExpect(jsonPath("$.information.type").value("purchase"));
+                .andExpect(jsonPath("$.information.type").value("purchase"))
+                .andExpect(jsonPath("$.information.response[0].name").value("perno"))
+                .andExpect(jsonPath("$.information.response[0].quantity").value(10));
+    }
+
+    @Test
+    void testChat_WhenExecutorSaturated() throws Exception {
+        // Arrange
+        Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
+        when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
+        when(aiService.chatAsync(anyString(), any(Client.class)))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("saturated")));
+
+        String requestBody = "{\"message\": \"Hello\", \"codigoCliente\": \"CLI-001\"}";
+
+        // Act & Assert
+        performChat(requestBody)
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void testChat_ClientOverRateLimit() throws Exception {
+        // Arrange
+        Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
+        when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
+        doThrow(new RateLimitedException("Too many chat requests from CLI-001", Duration.ofMillis(2500)))
+                .when(rateLimiter).acquire("CLI-001");
+
+        String requestBody = "{\"message\": \"Hello\", \"codigoCliente\": \"CLI-001\"}";
+
+        // Act & Assert
+        mockMvc.perform(post("/api/ai/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"));
+        verify(aiService, never()).chatAsync(anyString(), any(Client.class));
+    }
+
+    @Test
+    void testChat_TooManyLlmCallsInFlight() throws Exception {
+        // Arrange
+        Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
+        when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
+        when(aiService.chatAsync(anyString(), any(Client.class))).thenReturn(CompletableFuture.failedFuture(
+                new RateLimitedException("Too many OpenAI calls in flight", Duration.ofSeconds(1))));
+
+        String requestBody = "{\"message\": \"Hello\", \"codigoCliente\": \"CLI-001\"}";
+
+        // Act & Assert
+        performChat(requestBody)
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void testChatStream_SendsMessageTextThenInformation() throws Exception {
+        // Arrange
+        Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
+        ChatResponse chatResponse = new ChatResponse("CLI-001", "Retrieving prices", new ChatPayload.RequestInfo(List.of()));
+
+        when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
+        when(aiService.chatStream(anyString(), any(Client.class), any())).thenAnswer(invocation -> {
+            Consumer<String> onMessageText = invocation.getArgument(2);
+            onMessageText.accept("Retrieving ");
+            onMessageText.accept("prices");
+            return CompletableFuture.completedFuture(chatResponse);
+        });
+
+        String requestBody = "{\"message\": \"Price of P-001\", \"codigoCliente\": \"CLI-001\"}";
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/api/ai/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        // Assert
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.indexOf("event:message\ndata:Retrieving") < body.indexOf("event:message\ndata:prices"));
+        assertTrue(body.indexOf("event:message\ndata:prices") < body.indexOf("event:information"));
+        assertTrue(body.contains("\"type\":\"request_info\""));
+        assertFalse(body.contains("event:final_message"));
+    }
+
+    @Test
+    void testChatStream_SendsThePurchaseOutcomeReplacingTheStreamedMessage() throws Exception {
+        // Arrange
+        Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
+        String outcome = "Stock insuficiente para Perno Hexagonal 1/4\" x 2\" Acero Zincado";
+        ChatResponse chatResponse = new ChatResponse("CLI-001", outcome, new ChatPayload.PurchaseRejected(outcome));
+
+        when(clientService.getClientByCodigoCliente("CLI-001")).thenReturn(Optional.of(client));
+        when(aiService.chatStream(anyString(), any(Client.class), any())).thenAnswer(invocation -> {
+            Consumer<String> onMessageText = invocation.getArgument(2);
+            onMessageText.accept("Procesando tu compra");
+            return CompletableFuture.completedFuture(chatResponse);
+        });
+
+        String requestBody = "{\"message\": \"Quiero 5000 pernos P-001\", \"codigoCliente\": \"CLI-001\"}";
+
+        // Act
+        MvcResult result = mockMvc.perform(post("/api/ai/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        // Assert: the client gets the same message /chat answers with, before the payload
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("event:message\ndata:Procesando tu compra"));
+        int finalMessage = body.indexOf("event:final_message\ndata:Stock insuficiente");
+        assertTrue(finalMessage > body.indexOf("event:message"));
+        assertTrue(finalMessage < body.indexOf("event:information"));
+        assertTrue(body.contains("\"type\":\"purchase_rejected\""));
+    }
+
+    @Test
+    void testChatStream_WithNonExistentClient() throws Exception {
+        // Arrange
+        when(clientService.getClientByCodigoCliente("CLI-999")).thenReturn(Optional.empty());
+
+        String requestBody = "{\"message\": \"Hello\", \"codigoCliente\": \"CLI-999\"}";
+
+        // Act & Assert
+        mockMvc.perform(post("/api/ai/chat/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * The chat endpoint completes asynchronously, so the response is only available after the async dispatch.
+     */
+    private ResultActions performChat(String requestBody) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/ai/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
     }
 }
@@ -6,13 +6,17 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -90,4 +94,97 @@ class ClientControllerTest {
                 .andExpect(jsonPath("$[0].ciudad").value("Lima"))
                 .andExpect(jsonPath("$[1].ciudad").value("Lima"));
     }
+
+    @Test
+    void testGetAllClients_Paginated() throws Exception {
+        when(clientService.getAllClients()).thenReturn(threeClients());
+
+        mockMvc.perform(get("/clients").param("offset", "1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "3"))
+                .andExpect(header().string("Link", containsString("offset=2")))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].codigoCliente").value("CLI-002"));
+
+        mockMvc.perform(get("/clients").param("offset", "2").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Link"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testGetAllClients_ProjectsFields() throws Exception {
+        when(clientService.getAllClients()).thenReturn(threeClients());
+
+        mockMvc.perform(get("/clients").param("fields", "codigoCliente,distrito"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].codigoCliente").value("CLI-001"))
+                .andExpect(jsonPath("$[0].distrito").value("San Isidro"))
+                .andExpect(jsonPath("$[0].nombreCompleto").doesNotExist())
+                .andExpect(jsonPath("$[2].codigoCliente").value("CLI-003"));
+    }
+
+    @Test
+    void testGetAllClients_RejectsInvalidPage() throws Exception {
+        mockMvc.perform(get("/clients").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/clients").param("offset", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStreamAllClients_WritesJsonLines() throws Exception {
+        when(clientService.getAllClients()).thenReturn(threeClients());
+
+        MvcResult result = mockMvc.perform(get("/clients").accept(MediaType.APPLICATION_NDJSON).param("fields", "codigoCliente"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"codigoCliente\":\"CLI-001\"}\n{\"codigoCliente\":\"CLI-002\"}\n{\"codigoCliente\":\"CLI-003\"}\n"));
+    }
+
+    @Test
+    void testGetClientByCodigoCliente_ConditionalGet() throws Exception {
+        Client client = new Client("CLI-002", "María Isabel García Torres", "Calle Las Begonias 789", "Miraflores", "Lima", "+51 1 3456789", "mgarcia@email.com");
+        when(clientService.getDataVersion()).thenReturn(3L);
+        when(clientService.getClientByCodigoCliente("CLI-002")).thenReturn(Optional.of(client));
+
+        String etag = mockMvc.perform(get("/clients/CLI-002"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/clients/CLI-002").header("If-None-Match", "\"other\", " + etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/clients").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testGetClientByCodigoCliente_ConditionalGetForMissingClient() throws Exception {
+        Client client = new Client("CLI-002", "María Isabel García Torres", "Calle Las Begonias 789", "Miraflores", "Lima", "+51 1 3456789", "mgarcia@email.com");
+        when(clientService.getDataVersion()).thenReturn(3L);
+        when(clientService.getClientByCodigoCliente("CLI-002")).thenReturn(Optional.of(client));
+        when(clientService.getClientByCodigoCliente("CLI-999")).thenReturn(Optional.empty());
+
+        String etag = mockMvc.perform(get("/clients/CLI-002"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/clients/CLI-999").header("If-None-Match", etag))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/clients/CLI-999").header("If-None-Match", "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    private static List<Client> threeClients() {
+        return Arrays.asList(
+                new Client("CLI-001", "Juan Carlos Rodríguez Pérez", "Av. Javier Prado Este 456", "San Isidro", "Lima", "+51 1 2345678", "jrodriguez@email.com"),
+                new Client("CLI-002", "María Isabel García Torres", "Calle Las Begonias 789", "Miraflores", "Lima", "+51 1 3456789", "mgarcia@email.com"),
+                new Client("CLI-003", "Carlos Alberto Mendoza Silva", "Av. Arequipa 1234", "Lince", "Lima", "+51 1 4567890", "cmendoza@email.com")
+        );
+    }
 }
@@ -84,4 +84,24 @@ class CompletedPurchaseControllerTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$[0].codigoCliente").value("CLI-001"));
     }
+
+    @Test
+    void testGetPurchasesByCodigoCliente_PaginatedAndProjected() throws Exception {
+        List<PurchaseItem> items = Arrays.asList(
+                new PurchaseItem("P-001", "Perno Hexagonal", 100, 0.45, 45.00)
+        );
+        List<CompletedPurchase> purchases = Arrays.asList(
+                new CompletedPurchase("COMP-001", "CLI-001", "Juan Carlos Rodríguez Pérez", "2024-01-15", items, 80.00),
+                new CompletedPurchase("COMP-004", "CLI-001", "Juan Carlos Rodríguez Pérez", "2024-02-03", items, 45.00)
+        );
+        when(purchaseService.getPurchasesByCodigoCliente("CLI-001")).thenReturn(purchases);
+
+        mockMvc.perform(get("/purchases/client/CLI-001").param("limit", "1").param("fields", "codigoCompra,montoTotal"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].codigoCompra").value("COMP-001"))
+                .andExpect(jsonPath("$[0].montoTotal").value(80.00))
+                .andExpect(jsonPath("$[0].productos").doesNotExist());
+    }
 }
@@ -11,6 +11,9 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -58,4 +61,39 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$").isEmpty());
     }
+
+    @Test
+    void testGetProductsByType_ConditionalGet() throws Exception {
+        // Arrange
+        List<Product> products = Arrays.asList(
+                new Product("T-001", "tuerca", "Tuerca Hexagonal 1/4", 500)
+        );
+        when(productService.getDataVersion()).thenReturn(7L);
+        when(productService.getProductsByType("tuerca")).thenReturn(products);
+
+        // Act & Assert: the ETag follows the catalog version
+        String etag = mockMvc.perform(get("/products/tuerca"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(jsonPath("$[0].codigoProducto").value("T-001"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/products/tuerca").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+
+        // Served from the cached bytes while the version is unchanged
+        mockMvc.perform(get("/products/tuerca"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].codigoProducto").value("T-001"));
+        verify(productService, times(1)).getProductsByType("tuerca");
+
+        // A new version invalidates both the ETag and the cached bytes
+        when(productService.getDataVersion()).thenReturn(8L);
+        mockMvc.perform(get("/products/tuerca").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+        verify(productService, times(2)).getProductsByType("tuerca");
+    }
 }
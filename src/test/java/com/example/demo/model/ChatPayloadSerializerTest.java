@@ -0,0 +1,50 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatPayloadSerializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testPayloadsSerializeLikeTheMapsTheyReplace() throws Exception {
+        Product perno = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38);
+        Product volanda = new Product("V-004", "volanda", "Volanda de Presión 3/8\"", 2200, 0.16, 0.13);
+        CompletedPurchase purchase = new CompletedPurchase("COMP-0001", "CLI-001", "Juan Carlos", "2024-01-15",
+                List.of(new PurchaseItem("P-001", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 100, 0.38, 38.0)), 38.0);
+
+        assertSameJson(new ChatPayload.RequestInfo(List.of(perno, volanda)), "request_info", List.of(perno, volanda));
+        assertSameJson(new ChatPayload.PurchaseOrder(List.of(new ChatPayload.OrderLine("perno", 10))),
+                "purchase", List.of(Map.of("name", "perno", "quantity", 10)));
+        assertSameJson(new ChatPayload.Purchase(purchase), "purchase", purchase);
+        assertSameJson(new ChatPayload.PurchaseRejected("Stock insuficiente"), "purchase_rejected", "Stock insuficiente");
+        assertSameJson(new ChatPayload.Unknown("¿Puedes dar más detalles?"), "unknown", "¿Puedes dar más detalles?");
+    }
+
+    @Test
+    void testChangedProductIsNotServedFromItsCachedFragment() throws Exception {
+        Product perno = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38);
+        assertSameJson(new ChatPayload.RequestInfo(List.of(perno)), "request_info", List.of(perno));
+
+        Product afterPurchase = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1100, 0.45, 0.38);
+        assertSameJson(new ChatPayload.RequestInfo(List.of(afterPurchase)), "request_info", List.of(afterPurchase));
+    }
+
+    private void assertSameJson(ChatPayload payload, String type, Object response) throws Exception {
+        Map<String, Object> information = new HashMap<>();
+        information.put("type", type);
+        information.put("response", response);
+
+        String json = objectMapper.writeValueAsString(new ChatResponse("CLI-001", "Hola", payload));
+        String legacyJson = objectMapper.writeValueAsString(
+                Map.of("client", "CLI-001", "responseMessage", "Hola", "information", information));
+        assertEquals(objectMapper.readTree(legacyJson), objectMapper.readTree(json));
+    }
+}
@@ -69,4 +69,17 @@ class ClientRepositoryTest {
             assertEquals("Lima", client.getCiudad());
         }
     }
+
+    @Test
+    void testLookups_AreCaseInsensitiveAndImmutable() {
+        Optional<Client> client = clientRepository.findByCodigoCliente("cli-001");
+        assertTrue(client.isPresent());
+        assertEquals("CLI-001", client.get().getCodigoCliente());
+
+        List<Client> clients = clientRepository.findByDistrito("MIRAFLORES");
+        assertEquals(clientRepository.findByDistrito("Miraflores"), clients);
+        assertThrows(UnsupportedOperationException.class, () -> clients.add(client.get()));
+
+        assertTrue(clientRepository.findByCiudad("Atlantis").isEmpty());
+    }
 }
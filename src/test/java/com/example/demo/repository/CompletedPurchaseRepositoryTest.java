@@ -70,4 +70,14 @@ class CompletedPurchaseRepositoryTest {
         assertEquals(0.45, purchase.get().getProductos().get(0).getPrecioUnitario());
         assertEquals(45.00, purchase.get().getProductos().get(0).getSubtotal());
     }
+
+    @Test
+    void testLookups_AreCaseInsensitive() {
+        Optional<CompletedPurchase> purchase = purchaseRepository.findByCodigoCompra("comp-001");
+        assertTrue(purchase.isPresent());
+        assertEquals("COMP-001", purchase.get().getCodigoCompra());
+
+        assertEquals(purchaseRepository.findByCodigoCliente("CLI-001"), purchaseRepository.findByCodigoCliente("cli-001"));
+        assertTrue(purchaseRepository.findByCodigoCliente("CLI-999").isEmpty());
+    }
 }
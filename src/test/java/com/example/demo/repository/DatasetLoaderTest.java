@@ -0,0 +1,140 @@
+package com.example.demo.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetLoaderTest {
+
+    @TempDir
+    Path snapshotDir;
+
+    @Test
+    void testLoad_ParsesFilesInParallel() throws Exception {
+        DatasetLoader datasetLoader = new DatasetLoader(2, "", "");
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        // Each parser waits for the other one to start: this only completes if they run concurrently
+        CompletableFuture<Boolean> pernos = datasetLoader.load("products", "database/pernos.json", inputStream -> {
+            bothStarted.countDown();
+            return awaitQuietly(bothStarted);
+        });
+        CompletableFuture<Boolean> clients = datasetLoader.load("clients", "database/clients.json", inputStream -> {
+            bothStarted.countDown();
+            return awaitQuietly(bothStarted);
+        });
+
+        assertTrue(pernos.get(5, TimeUnit.SECONDS));
+        assertTrue(clients.get(5, TimeUnit.SECONDS));
+        assertDoesNotThrow(datasetLoader::afterSingletonsInstantiated);
+    }
+
+    @Test
+    void testAfterSingletonsInstantiated_FailsWhenAFileIsMissing() {
+        DatasetLoader datasetLoader = new DatasetLoader(2, "", "");
+        datasetLoader.load("products", "database/pernos.json", inputStream -> inputStream.readAllBytes().length);
+        CompletableFuture<Integer> missing = datasetLoader.load("clients", "database/missing.json", inputStream -> 0);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, datasetLoader::afterSingletonsInstantiated);
+
+        assertEquals("Failed to load clients from database/missing.json", exception.getMessage());
+        assertInstanceOf(FileNotFoundException.class, exception.getCause());
+        assertThrows(CompletionException.class, missing::join);
+    }
+
+    @Test
+    void testLoadWithSnapshotDir_MapsSnapshotWrittenByPreviousImport() throws Exception {
+        AtomicInteger imports = new AtomicInteger();
+        Supplier<CompletableFuture<SnapshotFile.Writer>> jsonImport = () -> {
+            imports.incrementAndGet();
+            return CompletableFuture.completedFuture(writer(List.of("P-001", "T-001")));
+        };
+
+        SnapshotFile first = new DatasetLoader(2, "", snapshotDir.toString())
+                .load("products", List.of("database/pernos.json"), jsonImport).get(5, TimeUnit.SECONDS);
+        SnapshotFile second = new DatasetLoader(2, "", snapshotDir.toString())
+                .load("products", List.of("database/pernos.json"), jsonImport).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("P-001", "T-001"), strings(first));
+        assertEquals(strings(first), strings(second));
+        assertEquals(1, imports.get());
+        assertTrue(Files.exists(snapshotDir.resolve("products.snapshot")));
+    }
+
+    @Test
+    void testLoadWithoutSnapshotDir_KeepsSnapshotOnTheHeap() throws Exception {
+        SnapshotFile snapshot = new DatasetLoader(2, "", "")
+                .load("products", List.of("database/pernos.json"),
+                        () -> CompletableFuture.completedFuture(writer(List.of("P-001"))))
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("P-001"), strings(snapshot));
+        try (Stream<Path> files = Files.list(snapshotDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testReload_ImportsJsonAndRewritesSnapshot() throws Exception {
+        AtomicInteger imports = new AtomicInteger();
+        List<String> json = new ArrayList<>(List.of("P-001", "T-001"));
+        Supplier<CompletableFuture<SnapshotFile.Writer>> jsonImport = () -> {
+            imports.incrementAndGet();
+            return CompletableFuture.completedFuture(writer(json));
+        };
+        DatasetLoader datasetLoader = new DatasetLoader(2, "", snapshotDir.toString());
+        datasetLoader.load("products", List.of("database/pernos.json"), jsonImport).get(5, TimeUnit.SECONDS);
+
+        // Same source stamp, other contents: a reload must not be served from the snapshot
+        json.set(0, "P-002");
+        SnapshotFile reloaded = datasetLoader.reload("products", List.of("database/pernos.json"), jsonImport)
+                .get(5, TimeUnit.SECONDS);
+        SnapshotFile nextStartup = new DatasetLoader(2, "", snapshotDir.toString())
+                .load("products", List.of("database/pernos.json"), jsonImport).get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("P-002", "T-001"), strings(reloaded));
+        assertEquals(strings(reloaded), strings(nextStartup));
+        assertEquals(2, imports.get());
+    }
+
+    private static SnapshotFile.Writer writer(List<String> values) {
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(4);
+        values.forEach(value -> writer.putString(value).endRecord());
+        return writer;
+    }
+
+    private static List<String> strings(SnapshotFile snapshot) {
+        List<String> values = new ArrayList<>();
+        for (int record = 0; record < snapshot.records(); record++) {
+            values.add(snapshot.getString(record, 0));
+        }
+        return values;
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatasetWatcherTest {
+
+    @TempDir
+    Path externalDir;
+
+    private DatasetWatcher datasetWatcher;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        datasetWatcher.destroy();
+    }
+
+    @Test
+    void testChangedFile_SwapsInReloadedCatalog() throws Exception {
+        DatasetLoader datasetLoader = new DatasetLoader(2, externalDir.toString(), "");
+        datasetWatcher = new DatasetWatcher(externalDir.toString(), Duration.ofMillis(100));
+        ProductRepository productRepository = new ProductRepository(datasetLoader, datasetWatcher, new PurchaseLog("", 0));
+        datasetLoader.afterSingletonsInstantiated();
+        datasetWatcher.afterSingletonsInstantiated();
+        assertEquals(1200, productRepository.findByCodigoProducto("P-001").orElseThrow().getCantidadStock());
+
+        Files.writeString(externalDir.resolve("pernos.json"), bundledPernos().replace("\"cantidadStock\": 1200", "\"cantidadStock\": 7"));
+
+        assertTrue(eventually(() -> productRepository.getVersion() == 2), "catalog should be reloaded");
+        Product perno = productRepository.findByCodigoProducto("P-001").orElseThrow();
+        assertEquals(7, perno.getCantidadStock());
+        assertEquals(30, productRepository.findAll().size());
+    }
+
+    @Test
+    void testInvalidFile_KeepsCurrentCatalog() throws Exception {
+        DatasetLoader datasetLoader = new DatasetLoader(2, externalDir.toString(), "");
+        datasetWatcher = new DatasetWatcher(externalDir.toString(), Duration.ofMillis(100));
+        ProductRepository productRepository = new ProductRepository(datasetLoader, datasetWatcher, new PurchaseLog("", 0));
+        ClientRepository clientRepository = new ClientRepository(datasetLoader, datasetWatcher);
+        datasetLoader.afterSingletonsInstantiated();
+        datasetWatcher.afterSingletonsInstantiated();
+
+        Files.writeString(externalDir.resolve("pernos.json"), "[{\"codigoProducto\": ");
+        Files.writeString(externalDir.resolve("clients.json"), "[{\"codigoCliente\": \"CLI-900\", \"ciudad\": \"Tacna\"}]");
+
+        assertTrue(eventually(() -> clientRepository.findByCodigoCliente("CLI-900").isPresent()), "clients should be reloaded");
+        assertEquals(1, productRepository.getVersion());
+        assertEquals(30, productRepository.findAll().size());
+        assertEquals(1, clientRepository.findAll().size());
+    }
+
+    private static String bundledPernos() throws IOException {
+        try (InputStream inputStream = DatasetWatcherTest.class.getClassLoader().getResourceAsStream("database/pernos.json")) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
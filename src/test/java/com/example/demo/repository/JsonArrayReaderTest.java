@@ -0,0 +1,61 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Client;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonArrayReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testForEach_ReadsElementsInOrder() throws IOException {
+        List<Client> clients = new ArrayList<>();
+
+        JsonArrayReader.forEach(objectMapper, json("["
+                + "{\"codigoCliente\": \"CLI-001\", \"ciudad\": \"Lima\"},"
+                + "{\"codigoCliente\": \"CLI-002\", \"ciudad\": \"Cusco\"}"
+                + "]"), Client.class, clients::add);
+
+        assertEquals(2, clients.size());
+        assertEquals("CLI-001", clients.get(0).getCodigoCliente());
+        assertEquals("Cusco", clients.get(1).getCiudad());
+    }
+
+    @Test
+    void testForEach_EmptyArray() throws IOException {
+        List<Client> clients = new ArrayList<>();
+
+        JsonArrayReader.forEach(objectMapper, json("[]"), Client.class, clients::add);
+
+        assertTrue(clients.isEmpty());
+    }
+
+    @Test
+    void testForEach_RejectsNonArrayDocument() {
+        assertThrows(JsonParseException.class,
+                () -> JsonArrayReader.forEach(objectMapper, json("{\"codigoCliente\": \"CLI-001\"}"), Client.class, client -> { }));
+    }
+
+    @Test
+    void testForEach_RejectsNonObjectElement() {
+        assertThrows(JsonParseException.class,
+                () -> JsonArrayReader.forEach(objectMapper, json("[{\"codigoCliente\": \"CLI-001\"}, 42]"), Client.class, client -> { }));
+    }
+
+    private static InputStream json(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
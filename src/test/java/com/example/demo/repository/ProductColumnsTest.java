@@ -0,0 +1,65 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductColumnsTest {
+
+    private final ProductColumns columns = ProductColumns.of(List.of(
+            new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38),
+            new Product("T-001", "tuerca", "Tuerca Hexagonal 1/4\" Acero Zincado", 2000, 0.15, 0.12),
+            new Product("P-002", "Perno", "Perno Hexagonal 1/4\" x 4\" Acero Zincado", 950, 0.60, 0.50)));
+
+    @Test
+    void testGet_MaterializesRow() {
+        Product product = columns.get(2);
+
+        assertEquals("P-002", product.getCodigoProducto());
+        assertEquals("Perno", product.getTipoProducto());
+        assertEquals("Perno Hexagonal 1/4\" x 4\" Acero Zincado", product.getNombreProducto());
+        assertEquals(950, product.getCantidadStock());
+        assertEquals(0.60, product.getPrecioUnitario());
+        assertEquals(0.50, product.getPrecioXMayor());
+    }
+
+    @Test
+    void testGet_ReturnsDetachedInstances() {
+        Product product = columns.get(0);
+        product.setCantidadStock(0);
+
+        assertNotSame(product, columns.get(0));
+        assertEquals(1200, columns.get(0).getCantidadStock());
+    }
+
+    @Test
+    void testAsList_IsReadOnlyViewInCatalogOrder() {
+        List<Product> products = columns.asList();
+
+        assertEquals(3, products.size());
+        assertEquals("T-001", products.get(1).getCodigoProducto());
+        assertThrows(UnsupportedOperationException.class, () -> products.add(columns.get(0)));
+    }
+
+    @Test
+    void testRowOfCode_IsCaseInsensitive() {
+        assertEquals(1, columns.rowOfCode("t-001"));
+        assertEquals(-1, columns.rowOfCode("X-999"));
+    }
+
+    @Test
+    void testFindByType_MatchesDictionaryEntriesCaseInsensitively() {
+        List<Product> pernos = columns.findByType("PERNO");
+
+        assertEquals(2, pernos.size());
+        assertEquals("P-001", pernos.get(0).getCodigoProducto());
+        assertEquals("P-002", pernos.get(1).getCodigoProducto());
+        assertTrue(columns.findByType("volanda").isEmpty());
+    }
+}
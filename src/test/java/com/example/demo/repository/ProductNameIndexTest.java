@@ -0,0 +1,65 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductNameIndexTest {
+
+    private final List<Product> products = List.of(
+            new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38),
+            new Product("P-009", "perno", "Perno U 3/8\" x 4\" con Tuercas", 750, 1.20, 1.00),
+            new Product("T-001", "tuerca", "Tuerca Hexagonal 1/4\" Acero Zincado", 3000, 0.15, 0.12),
+            new Product("V-005", "volanda", "Volanda Plana M8 Inoxidable", 1500, 0.25, 0.21));
+
+    private final ProductNameIndex index = ProductNameIndex.build(products);
+
+    @Test
+    void testFindAny_MatchesPhrasesOfConsecutiveWords() {
+        assertEquals(List.of("P-001"), codes(index.findAny(List.of("1/4x2"))));
+        assertEquals(List.of("V-005"), codes(index.findAny(List.of("planam8"))));
+        assertEquals(List.of("P-001", "T-001"), codes(index.findAny(List.of("acerozincado"))));
+    }
+
+    @Test
+    void testFindAny_MatchesAcrossWordBoundariesEndingMidWord() {
+        // "perno hex" and "4x2" start or end inside a word of "Perno Hexagonal 1/4\" x 2\""
+        assertEquals(List.of("P-001"), codes(index.findAny(List.of("pernohex"))));
+        assertEquals(List.of("P-001"), codes(index.findAny(List.of("4x2"))));
+        assertEquals(List.of("T-001"), codes(index.findAny(List.of("rcahex"))));
+    }
+
+    @Test
+    void testFindAny_MatchesAnywhereInLongNames() {
+        ProductNameIndex longNames = ProductNameIndex.build(List.of(new Product("A-001", "arandela",
+                "Arandela de Presion Partida para Perno de 1/2\" en Acero Galvanizado en Caliente", 400, 0.10, 0.08)));
+
+        assertEquals(List.of("A-001"), codes(longNames.findAny(List.of("arandeladepresionpartidaparapernode1/2enacero"))));
+        assertEquals(List.of("A-001"), codes(longNames.findAny(List.of("galvanizadoencaliente"))));
+    }
+
+    @Test
+    void testFindAny_MatchesWordPrefixes() {
+        // "tuerca" is a prefix of "tuercas" in P-009
+        assertEquals(List.of("P-009", "T-001"), codes(index.findAny(List.of("tuerca"))));
+        assertEquals(List.of("P-001", "T-001"), codes(index.findAny(List.of("hex"))));
+    }
+
+    @Test
+    void testFindAny_FallsBackToPartialWords() {
+        assertEquals(List.of("V-005"), codes(index.findAny(List.of("oxida"))));
+    }
+
+    @Test
+    void testFindAny_UnionInCatalogOrder() {
+        assertEquals(List.of("P-001", "T-001", "V-005"), codes(index.findAny(List.of("m8", "1/4"))));
+        assertTrue(index.findAny(List.of("arandela")).isEmpty());
+    }
+
+    private List<String> codes(List<Product> result) {
+        return result.stream().map(Product::getCodigoProducto).toList();
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -98,6 +99,15 @@ class ProductRepositoryTest {
         assertEquals(30, allProducts.size());
     }
 
+    @Test
+    void testFindByCodigosProducto_InCatalogOrderAndEachOnce() {
+        List<Product> products = productRepository.findByCodigosProducto(
+                Arrays.asList("P-003", "X-999", "p-001", null, "P-003"));
+
+        assertEquals(List.of("P-001", "P-003"),
+                products.stream().map(Product::getCodigoProducto).toList());
+    }
+
     @Test
     void testFindByProductNameKeywords_SingleKeyword() {
         List<String> keywords = List.of("1/4\" x 2\"");
@@ -166,4 +176,15 @@ class ProductRepositoryTest {
         assertNotNull(products);
         assertTrue(products.isEmpty());
     }
+
+    @Test
+    void testReload_SwapsCatalogAndIncrementsVersion() {
+        long version = productRepository.getVersion();
+
+        productRepository.reload();
+
+        assertEquals(version + 1, productRepository.getVersion());
+        assertEquals(30, productRepository.findAll().size());
+        assertEquals(1, productRepository.findByProductNameKeywords(List.of("1/4x2")).size());
+    }
 }
@@ -0,0 +1,118 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.CompletedPurchase;
+import com.example.demo.model.PurchaseItem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PurchaseLogTest {
+
+    @TempDir
+    Path logDir;
+
+    @Test
+    void testRestart_RecoversPurchasesAndStockSold() throws Exception {
+        PurchaseLog purchaseLog = new PurchaseLog(logDir.toString(), 1 << 20);
+        purchaseLog.appendPurchase(purchase("COMP-021", "P-001", 10)).join();
+        purchaseLog.appendPurchase(purchase("COMP-022", "P-001", 5)).join();
+        purchaseLog.destroy();
+
+        PurchaseLog reopened = new PurchaseLog(logDir.toString(), 1 << 20);
+        assertEquals(List.of("COMP-021", "COMP-022"),
+                reopened.getRecoveredPurchases().stream().map(CompletedPurchase::getCodigoCompra).toList());
+        assertEquals(Map.of("P-001", 15), reopened.getRecoveredStockSold());
+        reopened.destroy();
+    }
+
+    @Test
+    void testStockReset_ForgetsEarlierSales() throws Exception {
+        PurchaseLog purchaseLog = new PurchaseLog(logDir.toString(), 1 << 20);
+        purchaseLog.appendPurchase(purchase("COMP-021", "P-001", 10)).join();
+        purchaseLog.appendStockReset().join();
+        purchaseLog.appendPurchase(purchase("COMP-022", "T-002", 3)).join();
+        purchaseLog.destroy();
+
+        PurchaseLog reopened = new PurchaseLog(logDir.toString(), 1 << 20);
+        assertEquals(2, reopened.getRecoveredPurchases().size());
+        assertEquals(Map.of("T-002", 3), reopened.getRecoveredStockSold());
+        reopened.destroy();
+    }
+
+    @Test
+    void testCompaction_WritesSnapshotAndReplaysTail() throws Exception {
+        // Tiny segments, so most appends start a new one and get compacted
+        PurchaseLog purchaseLog = new PurchaseLog(logDir.toString(), 256);
+        List<CompletableFuture<Void>> appends = IntStream.rangeClosed(1, 200)
+                .mapToObj(i -> purchaseLog.appendPurchase(purchase(String.format("COMP-%03d", i), "V-003", 1)))
+                .toList();
+        CompletableFuture.allOf(appends.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        purchaseLog.destroy();
+
+        assertTrue(Files.exists(logDir.resolve("purchases.snapshot")));
+        PurchaseLog reopened = new PurchaseLog(logDir.toString(), 256);
+        assertEquals(200, reopened.getRecoveredPurchases().size());
+        assertEquals("COMP-200", reopened.getRecoveredPurchases().get(199).getCodigoCompra());
+        assertEquals(Map.of("V-003", 200), reopened.getRecoveredStockSold());
+        reopened.destroy();
+    }
+
+    @Test
+    void testTornEntry_IsDropped() throws Exception {
+        PurchaseLog purchaseLog = new PurchaseLog(logDir.toString(), 1 << 20);
+        purchaseLog.appendPurchase(purchase("COMP-021", "P-001", 10)).join();
+        purchaseLog.destroy();
+        // A crash in the middle of the next write
+        Files.writeString(logDir.resolve("purchases-1.log"), "{\"lsn\":2,\"type\":\"purch", StandardOpenOption.APPEND);
+
+        PurchaseLog reopened = new PurchaseLog(logDir.toString(), 1 << 20);
+        assertEquals(1, reopened.getRecoveredPurchases().size());
+        reopened.appendPurchase(purchase("COMP-022", "P-001", 1)).join();
+        reopened.destroy();
+
+        PurchaseLog again = new PurchaseLog(logDir.toString(), 1 << 20);
+        assertEquals(Map.of("P-001", 11), again.getRecoveredStockSold());
+        again.destroy();
+    }
+
+    @Test
+    void testEntryWithoutItsNewline_IsDroppedAsTorn() throws Exception {
+        PurchaseLog purchaseLog = new PurchaseLog(logDir.toString(), 1 << 20);
+        purchaseLog.appendPurchase(purchase("COMP-021", "P-001", 10)).join();
+        purchaseLog.destroy();
+        // A crash just before the newline: the entry is complete JSON but was never acknowledged
+        Path segment = logDir.resolve("purchases-1.log");
+        String committed = Files.readString(segment);
+        Files.writeString(segment, committed.replace("\"lsn\":1", "\"lsn\":2").replace("COMP-021", "COMP-022").trim(),
+                StandardOpenOption.APPEND);
+
+        PurchaseLog reopened = new PurchaseLog(logDir.toString(), 1 << 20);
+        assertEquals(List.of("COMP-021"),
+                reopened.getRecoveredPurchases().stream().map(CompletedPurchase::getCodigoCompra).toList());
+        assertEquals(committed, Files.readString(segment));
+        reopened.appendPurchase(purchase("COMP-023", "P-001", 1)).join();
+        reopened.destroy();
+
+        // The entry appended after the recovery is on a line of its own, and is not lost
+        PurchaseLog again = new PurchaseLog(logDir.toString(), 1 << 20);
+        assertEquals(List.of("COMP-021", "COMP-023"),
+                again.getRecoveredPurchases().stream().map(CompletedPurchase::getCodigoCompra).toList());
+        again.destroy();
+    }
+
+    private static CompletedPurchase purchase(String codigoCompra, String codigoProducto, int cantidad) {
+        PurchaseItem item = new PurchaseItem(codigoProducto, "Producto " + codigoProducto, cantidad, 1.0, cantidad);
+        return new CompletedPurchase(codigoCompra, "CLI-001", "Cliente", "2026-01-01", List.of(item), cantidad);
+    }
+}
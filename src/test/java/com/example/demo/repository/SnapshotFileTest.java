@@ -0,0 +1,88 @@
+package com.example.demo.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWriteThenOpen_ReadsRecordsByOffset() throws IOException {
+        Path path = dir.resolve("products.snapshot");
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(4 + 4 + 4 + 8);
+        writer.putString("P-001").putString("Perno hexagonal 1/4\" x 2\"").putInt(1200).putDouble(0.35).endRecord();
+        writer.putString("V-001").putString(null).putInt(0).putDouble(0.05).endRecord();
+        writer.putString("P-001").putString("Ñandú").putInt(-1).putDouble(1.5).endRecord();
+        writer.writeTo(path, 42);
+
+        SnapshotFile snapshot = SnapshotFile.open(path, 42);
+
+        assertEquals(3, snapshot.records());
+        assertEquals("Perno hexagonal 1/4\" x 2\"", snapshot.getString(0, 4));
+        assertEquals(1200, snapshot.getInt(0, 8));
+        assertEquals(0.35, snapshot.getDouble(0, 12));
+        assertNull(snapshot.getString(1, 4));
+        assertEquals("Ñandú", snapshot.getString(2, 4));
+        // Equal strings are stored once and share their id
+        assertEquals(snapshot.getInt(0, 0), snapshot.getInt(2, 0));
+        assertEquals("P-001", snapshot.string(snapshot.getInt(2, 0)));
+    }
+
+    @Test
+    void testToSnapshot_ReadsRecordsWithoutAFile() {
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(4 + 8);
+        // More records than the writer's initial buffer holds
+        for (int i = 0; i < 100; i++) {
+            writer.putString("CLI-" + i).putDouble(i).endRecord();
+        }
+
+        SnapshotFile snapshot = writer.toSnapshot();
+
+        assertEquals(100, snapshot.records());
+        assertEquals("CLI-99", snapshot.getString(99, 0));
+        assertEquals(42.0, snapshot.getDouble(42, 4));
+    }
+
+    @Test
+    void testOpen_IgnoresSnapshotOfOtherSourceFiles() throws IOException {
+        Path path = dir.resolve("clients.snapshot");
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(4);
+        writer.putString("CLI-001").endRecord();
+        writer.writeTo(path, 42);
+
+        assertNull(SnapshotFile.open(path, 43));
+        assertNull(SnapshotFile.open(dir.resolve("missing.snapshot"), 42));
+    }
+
+    @Test
+    void testOpen_RejectsTruncatedSnapshot() throws IOException {
+        Path path = dir.resolve("clients.snapshot");
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(4);
+        writer.putString("CLI-001").endRecord();
+        writer.writeTo(path, 42);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        assertThrows(IOException.class, () -> SnapshotFile.open(path, 42));
+    }
+
+    @Test
+    void testEndRecord_RejectsRecordOfWrongWidth() {
+        SnapshotFile.Writer writer = new SnapshotFile.Writer(8);
+        writer.putString("CLI-001");
+
+        assertThrows(IllegalStateException.class, writer::endRecord);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class AiMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private ChatResponseCache responseCache;
+    private AiMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        responseCache = new ChatResponseCache(true, 10, Duration.ofMinutes(10));
+        metrics = new AiMetrics(registry, responseCache, new FastPathClassifier(mock(ProductRepository.class), true));
+    }
+
+    @Test
+    void testRecordStage_RecordsOneTimerPerStage() {
+        metrics.recordStage("llm", TimeUnit.MILLISECONDS.toNanos(300));
+        metrics.recordStage("llm", TimeUnit.MILLISECONDS.toNanos(100));
+        metrics.recordStage("parse", TimeUnit.MILLISECONDS.toNanos(2));
+
+        Timer llm = registry.get("ai.chat.stage").tag("stage", "llm").timer();
+        assertEquals(2, llm.count());
+        assertEquals(400, llm.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("ai.chat.stage").tag("stage", "parse").timer().count());
+    }
+
+    @Test
+    void testRecordResponse_CountsByTypeAndSource() {
+        metrics.recordResponse("request_info", "llm");
+        metrics.recordResponse("request_info", "llm");
+        metrics.recordResponse("request_info", "fast_path");
+
+        assertEquals(2, registry.get("ai.chat.responses").tags("type", "request_info", "source", "llm").counter().count());
+        assertEquals(1, registry.get("ai.chat.responses").tags("type", "request_info", "source", "fast_path").counter().count());
+    }
+
+    @Test
+    void testCacheMeters_ReadCacheState() {
+        responseCache.get("precio perno", 1L);
+        responseCache.put("precio perno", 1L, "{}");
+        responseCache.get("precio perno", 1L);
+        metrics.recordParseFailure();
+
+        assertEquals(1, registry.get("ai.chat.cache.hits").functionCounter().count());
+        assertEquals(1, registry.get("ai.chat.cache.misses").functionCounter().count());
+        assertEquals(1, registry.get("ai.chat.cache.size").gauge().value());
+        assertEquals(1, registry.get("ai.chat.parse.failures").counter().count());
+    }
+}
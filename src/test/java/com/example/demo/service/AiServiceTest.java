@@ -1,8 +1,16 @@
 package com.example.demo.service;
 
+import com.example.demo.model.ChatPayload;
 import com.example.demo.model.ChatResponse;
+import com.example.demo.model.Client;
+import com.example.demo.model.CompletedPurchase;
 import com.example.demo.model.Product;
+import com.example.demo.model.PurchaseItem;
 import com.example.demo.repository.ProductRepository;
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -10,29 +18,47 @@ import org.mockito.MockitoAnnotations;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class AiServiceTest {
 
-    private static final String TEST_API_KEY = "sk-1234567890123456789012345678901234567890123456789012";
     private static final String UNKNOWN_REQUEST_MESSAGE = "Lo siento, no logré entender tu solicitud. ¿Puedes proporcionar más detalles o intentar reformular tu pedido?";
 
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private PurchaseService purchaseService;
+
+    @Mock
+    private LlmClient llmClient;
+
     private AiService aiService;
 
     @BeforeEach
     void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
-        // Create AiService with a valid-looking API key to bypass validation
-        aiService = new AiService(TEST_API_KEY, productRepository);
+        aiService = createAiService(new ChatResponseCache(true, 100, Duration.ofMinutes(10)), Runnable::run);
     }
 
     @Test
@@ -54,21 +80,22 @@ class AiServiceTest {
                 + "}";
 
         // Use reflection to call private parseAiResponse method with new signature
-        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class, List.class);
+        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class);
         parseMethod.setAccessible(true);
-        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002", allProducts);
+        stubCatalog(allProducts);
+        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002");
 
         // Assertions
         assertNotNull(response);
         assertEquals("CLI-002", response.getClient());
         assertEquals("Estoy recuperando la información de precios y stock", response.getResponseMessage());
 
-        Map<String, Object> information = response.getInformation();
+        ChatPayload information = response.getInformation();
         assertNotNull(information);
-        assertEquals("request_info", information.get("type"));
+        assertEquals("request_info", information.getType());
 
         // Verify response contains Product objects, not just strings
-        Object responseObj = information.get("response");
+        Object responseObj = information.getResponse();
         assertNotNull(responseObj);
         assertTrue(responseObj instanceof List);
 
@@ -102,15 +129,16 @@ class AiServiceTest {
                 + "}";
 
         // Use reflection to call private parseAiResponse method with new signature
-        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class, List.class);
+        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class);
         parseMethod.setAccessible(true);
-        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002", allProducts);
+        stubCatalog(allProducts);
+        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002");
 
         // Assertions
         assertNotNull(response);
-        Map<String, Object> information = response.getInformation();
+        ChatPayload information = response.getInformation();
         @SuppressWarnings("unchecked")
-        List<Product> products = (List<Product>) information.get("response");
+        List<Product> products = (List<Product>) information.getResponse();
         
         // Should be empty since no product codes provided
         assertEquals(0, products.size());
@@ -137,15 +165,16 @@ class AiServiceTest {
                 + "}";
 
         // Use reflection to call private parseAiResponse method with new signature
-        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class, List.class);
+        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class);
         parseMethod.setAccessible(true);
-        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002", allProducts);
+        stubCatalog(allProducts);
+        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002");
 
         // Assertions
         assertNotNull(response);
-        Map<String, Object> information = response.getInformation();
+        ChatPayload information = response.getInformation();
         @SuppressWarnings("unchecked")
-        List<Product> products = (List<Product>) information.get("response");
+        List<Product> products = (List<Product>) information.getResponse();
         
         // Should contain exactly 4 products matching the codes returned by AI
         assertEquals(4, products.size());
@@ -161,6 +190,27 @@ class AiServiceTest {
         assertFalse(products.stream().anyMatch(p -> p.getCodigoProducto().equals("V-001")));
     }
 
+    @Test
+    void testParseAiResponse_FencedCompletionResolvesCodesInCatalogOrder() {
+        Product perno1 = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38);
+        Product perno2 = new Product("P-002", "perno", "Perno Hexagonal 1/4\" x 4\" Acero Zincado", 950, 0.60, 0.50);
+        Product volanda1 = new Product("V-005", "volanda", "Volanda Plana M8 Inoxidable", 1500, 0.25, 0.21);
+        List<Product> allProducts = Arrays.asList(perno1, perno2, volanda1);
+
+        String aiResponse = "Aquí está la respuesta:\n```json\n{"
+                + "\"requestType\": \"request_info\","
+                + "\"productCodes\": [\"V-005\", \"X-999\", \"P-001\", \"V-005\"],"
+                + "\"message\": \"Estoy recuperando la información de precios y stock\""
+                + "}\n```";
+
+        stubCatalog(allProducts);
+        ChatResponse response = aiService.parseAiResponse(aiResponse, "CLI-002");
+
+        assertEquals("Estoy recuperando la información de precios y stock", response.getResponseMessage());
+        assertEquals("request_info", response.getInformation().getType());
+        assertEquals(List.of(perno1, volanda1), response.getInformation().getResponse());
+    }
+
     @Test
     void testParseAiResponse_WithUnknownRequestType() throws Exception {
         // Setup mock products
@@ -174,19 +224,20 @@ class AiServiceTest {
                 + "}";
 
         // Use reflection to call private parseAiResponse method
-        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class, List.class);
+        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class);
         parseMethod.setAccessible(true);
-        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002", allProducts);
+        stubCatalog(allProducts);
+        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002");
 
         // Assertions
         assertNotNull(response);
         assertEquals("CLI-002", response.getClient());
         assertEquals(UNKNOWN_REQUEST_MESSAGE, response.getResponseMessage());
 
-        Map<String, Object> information = response.getInformation();
+        ChatPayload information = response.getInformation();
         assertNotNull(information);
-        assertEquals("unknown", information.get("type"));
-        assertEquals(UNKNOWN_REQUEST_MESSAGE, information.get("response"));
+        assertEquals("unknown", information.getType());
+        assertEquals(UNKNOWN_REQUEST_MESSAGE, information.getResponse());
     }
 
     @Test
@@ -199,18 +250,196 @@ class AiServiceTest {
         String aiResponseJson = "This is not valid JSON at all";
 
         // Use reflection to call private parseAiResponse method
-        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class, List.class);
+        Method parseMethod = AiService.class.getDeclaredMethod("parseAiResponse", String.class, String.class);
         parseMethod.setAccessible(true);
-        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002", allProducts);
+        stubCatalog(allProducts);
+        ChatResponse response = (ChatResponse) parseMethod.invoke(aiService, aiResponseJson, "CLI-002");
 
         // Assertions
         assertNotNull(response);
         assertEquals("CLI-002", response.getClient());
         assertEquals(UNKNOWN_REQUEST_MESSAGE, response.getResponseMessage());
 
-        Map<String, Object> information = response.getInformation();
+        ChatPayload information = response.getInformation();
         assertNotNull(information);
-        assertEquals("unknown", information.get("type"));
-        assertEquals(UNKNOWN_REQUEST_MESSAGE, information.get("response"));
+        assertEquals("unknown", information.getType());
+        assertEquals(UNKNOWN_REQUEST_MESSAGE, information.getResponse());
+    }
+
+    @Test
+    void testChatAsync_FailsFastWhenExecutorRejects() {
+        AiService saturatedService = createAiService(
+                new ChatResponseCache(true, 100, Duration.ofMinutes(10)),
+                task -> {
+                    throw new RejectedExecutionException("saturated");
+                });
+        Client client = new Client("CLI-001", "Juan Carlos", "Av. Test", "District", "Lima", "123456", "test@email.com");
+
+        CompletableFuture<ChatResponse> future = saturatedService.chatAsync("precio de P-001", client);
+
+        assertTrue(future.isCompletedExceptionally());
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    void testChat_CacheHitRebuildsResponseForCallerWithoutCallingOpenAi() {
+        Product perno1 = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38);
+        when(productRepository.getVersion()).thenReturn(1L);
+        stubCatalog(List.of(perno1));
+
+        ChatResponseCache cache = new ChatResponseCache(true, 100, Duration.ofMinutes(10));
+        cache.put("precio perno hexagonal 1/4 x 2", 1L, "{"
+                + "\"requestType\": \"request_info\","
+                + "\"productCodes\": [\"P-001\"],"
+                + "\"message\": \"Estoy recuperando la información de precios y stock\""
+                + "}");
+        AiService cachedService = createAiService(cache, Runnable::run);
+        Client client = new Client("CLI-007", "Ana", "Av. Test", "District", "Lima", "123456", "ana@email.com");
+
+        ChatResponse response = cachedService.chat("Precio perno hexagonal 1/4\" x 2\"", client);
+
+        assertEquals("CLI-007", response.getClient());
+        assertEquals("request_info", response.getInformation().getType());
+        @SuppressWarnings("unchecked")
+        List<Product> products = (List<Product>) response.getInformation().getResponse();
+        assertEquals(List.of(perno1), products);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void testChat_PurchaseIsExecutedAndRecorded() {
+        when(productRepository.getVersion()).thenReturn(1L);
+        stubCatalog(List.of());
+        Client client = new Client("CLI-007", "Ana", "Av. Test", "District", "Lima", "123456", "ana@email.com");
+        CompletedPurchase purchase = new CompletedPurchase("COMP-021", "CLI-007", "Ana", "2024-06-01",
+                List.of(new PurchaseItem("P-001", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 100, 0.45, 45.00)), 45.00);
+        when(purchaseService.purchase(client, Map.of("Perno Hexagonal 1/4\" x 2\" Acero Zincado", 100))).thenReturn(purchase);
+
+        ChatResponseCache cache = new ChatResponseCache(true, 100, Duration.ofMinutes(10));
+        cache.put("compro 100 pernos hexagonales 1/4 x 2", 1L, "{"
+                + "\"message\": \"Estoy procesando tu pedido\","
+                + "\"requestType\": \"purchase\","
+                + "\"items\": [{\"name\": \"Perno Hexagonal 1/4\\\" x 2\\\" Acero Zincado\", \"quantity\": 100}]"
+                + "}");
+
+        ChatResponse response = createAiService(cache, Runnable::run).chat("Compro 100 pernos hexagonales 1/4 x 2", client);
+
+        assertEquals("purchase", response.getInformation().getType());
+        assertEquals(purchase, response.getInformation().getResponse());
+        assertEquals("Tu compra COMP-021 fue registrada por un total de S/ 45.00.", response.getResponseMessage());
+    }
+
+    @Test
+    void testChat_RejectedPurchaseExplainsWhy() {
+        when(productRepository.getVersion()).thenReturn(1L);
+        stubCatalog(List.of());
+        Client client = new Client("CLI-007", "Ana", "Av. Test", "District", "Lima", "123456", "ana@email.com");
+        when(purchaseService.purchase(client, Map.of("V-001", 5000)))
+                .thenThrow(new PurchaseRejectedException("No hay stock suficiente de Volanda Plana 1/4\" Acero Zincado: quedan 4000 unidades."));
+
+        ChatResponseCache cache = new ChatResponseCache(true, 100, Duration.ofMinutes(10));
+        cache.put("compro 5000 v-001", 1L, "{"
+                + "\"message\": \"Estoy procesando tu pedido\","
+                + "\"requestType\": \"purchase\","
+                + "\"items\": [{\"name\": \"V-001\", \"quantity\": 5000}]"
+                + "}");
+
+        ChatResponse response = createAiService(cache, Runnable::run).chat("Compro 5000 V-001", client);
+
+        assertEquals("purchase_rejected", response.getInformation().getType());
+        assertEquals("No hay stock suficiente de Volanda Plana 1/4\" Acero Zincado: quedan 4000 unidades.", response.getResponseMessage());
+    }
+
+    @Test
+    void testChat_AnswersUnknownWhileLlmIsUnavailable() {
+        when(productRepository.getVersion()).thenReturn(1L);
+        stubCatalog(List.of());
+        when(llmClient.createChatCompletion(any())).thenThrow(new LlmUnavailableException("OpenAI circuit breaker is open"));
+        Client client = new Client("CLI-007", "Ana", "Av. Test", "District", "Lima", "123456", "ana@email.com");
+
+        ChatResponse response = aiService.chat("Quiero algo para fijar una repisa", client);
+
+        assertEquals("CLI-007", response.getClient());
+        assertEquals("unknown", response.getInformation().getType());
+        assertEquals(UNKNOWN_REQUEST_MESSAGE, response.getResponseMessage());
+    }
+
+    @Test
+    void testChatStream_SendsUnknownMessageWhileLlmIsUnavailable() throws Exception {
+        when(productRepository.getVersion()).thenReturn(1L);
+        stubCatalog(List.of());
+        doThrow(new LlmUnavailableException("OpenAI call failed: timeout"))
+                .when(llmClient).streamChatCompletion(any(), any());
+        Client client = new Client("CLI-007", "Ana", "Av. Test", "District", "Lima", "123456", "ana@email.com");
+        List<String> sent = new ArrayList<>();
+
+        ChatResponse response = aiService.chatStream("Quiero algo para fijar una repisa", client, sent::add).get();
+
+        assertEquals("unknown", response.getInformation().getType());
+        assertEquals(List.of(UNKNOWN_REQUEST_MESSAGE), sent);
+    }
+
+    @Test
+    void testChat_IdenticalConcurrentMessagesShareOneLlmCall() throws Exception {
+        Product perno1 = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38);
+        when(productRepository.getVersion()).thenReturn(1L);
+        stubCatalog(List.of(perno1));
+        CountDownLatch release = new CountDownLatch(1);
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(new ChatMessage("assistant", "{"
+                + "\"message\": \"Estoy recuperando la información de precios y stock\","
+                + "\"requestType\": \"request_info\","
+                + "\"productCodes\": [\"P-001\"]"
+                + "}"));
+        ChatCompletionResult completion = new ChatCompletionResult();
+        completion.setChoices(List.of(choice));
+        when(llmClient.createChatCompletion(any())).thenAnswer(invocation -> {
+            release.await();
+            return completion;
+        });
+        AiService uncachedService = createAiService(new ChatResponseCache(false, 0, Duration.ofMinutes(10)), Runnable::run);
+        Client ana = new Client("CLI-007", "Ana", "Av. Test", "District", "Lima", "123456", "ana@email.com");
+        Client luis = new Client("CLI-008", "Luis", "Av. Test", "District", "Lima", "654321", "luis@email.com");
+
+        CompletableFuture<ChatResponse> first = CompletableFuture.supplyAsync(() -> uncachedService.chat("¿Precio del perno promocionado?", ana));
+        verify(llmClient, timeout(5000)).createChatCompletion(any());
+        CompletableFuture<ChatResponse> second = CompletableFuture.supplyAsync(() -> uncachedService.chat("¿precio del perno promocionado?", luis));
+        Thread.sleep(200);
+        release.countDown();
+
+        assertEquals("CLI-007", first.get(5, TimeUnit.SECONDS).getClient());
+        assertEquals("CLI-008", second.get(5, TimeUnit.SECONDS).getClient());
+        assertEquals(List.of(perno1), second.get().getInformation().getResponse());
+        verify(llmClient, times(1)).createChatCompletion(any());
+    }
+
+    private AiService createAiService(ChatResponseCache cache, Executor executor) {
+        FastPathClassifier fastPathClassifier = new FastPathClassifier(productRepository, true);
+        AiMetrics metrics = new AiMetrics(new SimpleMeterRegistry(), cache, fastPathClassifier);
+        return new AiService(
+                llmClient,
+                new ChatBatcher(llmClient, metrics, false, 8, Duration.ofMillis(5)),
+                new CatalogPromptProvider(productRepository),
+                new CatalogRetriever(productRepository, true, 20, 2),
+                productRepository,
+                cache,
+                fastPathClassifier,
+                purchaseService,
+                metrics,
+                executor);
+    }
+
+    /**
+     * Serve the given products from the mocked repository, looked up by code like the real one does.
+     */
+    private void stubCatalog(List<Product> products) {
+        when(productRepository.findAll()).thenReturn(products);
+        when(productRepository.findByCodigosProducto(anyList())).thenAnswer(invocation -> {
+            List<String> codes = invocation.getArgument(0);
+            return products.stream()
+                    .filter(product -> codes.contains(product.getCodigoProducto()))
+                    .collect(Collectors.toList());
+        });
     }
 }
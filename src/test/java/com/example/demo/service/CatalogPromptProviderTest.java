@@ -0,0 +1,66 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CatalogPromptProviderTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private CatalogPromptProvider catalogPromptProvider;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        catalogPromptProvider = new CatalogPromptProvider(productRepository);
+    }
+
+    @Test
+    void testGetCatalogPrompt_RendersOncePerVersion() {
+        Product perno = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38);
+        when(productRepository.getVersion()).thenReturn(1L);
+        when(productRepository.findAll()).thenReturn(List.of(perno));
+
+        CatalogPrompt first = catalogPromptProvider.getCatalogPrompt();
+        CatalogPrompt second = catalogPromptProvider.getCatalogPrompt();
+
+        // The same rendered prompt is reused while the catalog version does not change
+        assertSame(first, second);
+        verify(productRepository, times(1)).findAll();
+        assertEquals(1L, first.getVersion());
+        assertTrue(first.getSystemMessage().contains("Complete Product Catalog:"));
+        assertTrue(first.getSystemMessage().contains("Code: P-001, Type: perno"));
+    }
+
+    @Test
+    void testGetCatalogPrompt_RerendersWhenVersionChanges() {
+        Product perno = new Product("P-001", "perno", "Perno Hexagonal 1/4\" x 2\" Acero Zincado", 1200, 0.45, 0.38);
+        Product tuerca = new Product("T-001", "tuerca", "Tuerca Hexagonal 1/4\" Acero Zincado", 3000, 0.15, 0.12);
+        when(productRepository.getVersion()).thenReturn(1L);
+        when(productRepository.findAll()).thenReturn(List.of(perno));
+
+        CatalogPrompt first = catalogPromptProvider.getCatalogPrompt();
+
+        when(productRepository.getVersion()).thenReturn(2L);
+        when(productRepository.findAll()).thenReturn(List.of(perno, tuerca));
+
+        CatalogPrompt second = catalogPromptProvider.getCatalogPrompt();
+
+        assertNotSame(first, second);
+        assertEquals(2L, second.getVersion());
+        assertFalse(first.getSystemMessage().contains("T-001"));
+        assertTrue(second.getSystemMessage().contains("Code: T-001, Type: tuerca"));
+    }
+}
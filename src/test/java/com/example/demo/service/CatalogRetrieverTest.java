@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Product;
+import com.example.demo.repository.DatasetLoader;
+import com.example.demo.repository.DatasetWatcher;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.PurchaseLog;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogRetrieverTest {
+
+    private final ProductRepository productRepository = new ProductRepository(
+            new DatasetLoader(2, "", ""), new DatasetWatcher("", Duration.ofMillis(500)), new PurchaseLog("", 0));
+
+    @Test
+    void testSelectCandidates_RanksSpecificMatchesFirst() {
+        CatalogRetriever retriever = new CatalogRetriever(productRepository, true, 20, 2);
+
+        List<Product> candidates = retriever.selectCandidates("¿Cuál es el precio de la volanda plana M8?");
+
+        assertFalse(candidates.isEmpty());
+        assertEquals("V-005", candidates.get(0).getCodigoProducto());
+        assertTrue(candidates.size() < productRepository.findAll().size());
+    }
+
+    @Test
+    void testSelectCandidates_LimitedToTopN() {
+        CatalogRetriever retriever = new CatalogRetriever(productRepository, true, 3, 1);
+
+        List<Product> candidates = retriever.selectCandidates("stock de pernos hexagonales y volandas planas");
+
+        assertEquals(3, candidates.size());
+    }
+
+    @Test
+    void testSelectCandidates_FallsBackToFullCatalogWhenScoreTooLow() {
+        CatalogRetriever retriever = new CatalogRetriever(productRepository, true, 20, 2);
+
+        assertTrue(retriever.selectCandidates("hola, ¿qué tal?").isEmpty());
+        assertTrue(retriever.selectCandidates("precio de pernos").isEmpty());
+    }
+
+    @Test
+    void testSelectCandidates_Disabled() {
+        CatalogRetriever retriever = new CatalogRetriever(productRepository, false, 20, 2);
+
+        assertTrue(retriever.selectCandidates("volanda plana M8").isEmpty());
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.theokanning.openai.completion.chat.ChatCompletionChoice;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChatBatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CatalogPrompt catalogPrompt = new CatalogPrompt(1L, "Catalog", "Instructions", Map.of());
+    private final ExecutorService callers = Executors.newFixedThreadPool(5);
+    private final AiMetrics metrics = new AiMetrics(new SimpleMeterRegistry(),
+            new ChatResponseCache(false, 1, Duration.ofMinutes(1)), new FastPathClassifier(null, false));
+
+    @Mock
+    private LlmClient llmClient;
+
+    private Set<String> unanswered = Set.of();
+    private RuntimeException batchFailure;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(llmClient.createChatCompletion(any())).thenAnswer(invocation -> answer(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneCompletion() throws Exception {
+        ChatBatcher chatBatcher = new ChatBatcher(llmClient, metrics, true, 3, Duration.ofSeconds(5));
+
+        List<String> completions = completeConcurrently(chatBatcher, "precio P-001", "precio T-002", "stock V-003");
+
+        assertEquals(List.of("{\"message\":\"batched precio P-001\"}", "{\"message\":\"batched precio T-002\"}",
+                "{\"message\":\"batched stock V-003\"}"), completions);
+        verify(llmClient, times(1)).createChatCompletion(any());
+    }
+
+    @Test
+    void testLoneRequestIsSentAloneOnceItsWaitIsOver() {
+        ChatBatcher chatBatcher = new ChatBatcher(llmClient, metrics, true, 3, Duration.ofMillis(20));
+
+        long start = System.nanoTime();
+        String completion = chatBatcher.complete(catalogPrompt, List.of(), "precio P-001");
+
+        assertEquals("{\"message\":\"alone precio P-001\"}", completion);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void testRequestLeftOutOfTheBatchAnswerIsSentAlone() throws Exception {
+        unanswered = Set.of("2");
+        ChatBatcher chatBatcher = new ChatBatcher(llmClient, metrics, true, 3, Duration.ofSeconds(5));
+
+        List<String> completions = completeConcurrently(chatBatcher, "precio P-001", "precio T-002", "stock V-003");
+
+        assertEquals(1, completions.stream().filter(completion -> completion.contains("alone")).count());
+        assertEquals(2, completions.stream().filter(completion -> completion.contains("batched")).count());
+        verify(llmClient, times(2)).createChatCompletion(any());
+    }
+
+    @Test
+    void testFailedBatchCallFallsBackToSendingEachRequestAlone() throws Exception {
+        batchFailure = new RuntimeException("400 Bad Request");
+        ChatBatcher chatBatcher = new ChatBatcher(llmClient, metrics, true, 3, Duration.ofSeconds(5));
+
+        List<String> completions = completeConcurrently(chatBatcher, "precio P-001", "precio T-002", "stock V-003");
+
+        assertEquals(List.of("{\"message\":\"alone precio P-001\"}", "{\"message\":\"alone precio T-002\"}",
+                "{\"message\":\"alone stock V-003\"}"), completions);
+        verify(llmClient, times(4)).createChatCompletion(any());
+    }
+
+    @Test
+    void testBatchCallRefusedForTooManyInFlightFailsEveryRequest() throws Exception {
+        batchFailure = new RateLimitedException("Too many OpenAI calls in flight", Duration.ofSeconds(1));
+        ChatBatcher chatBatcher = new ChatBatcher(llmClient, metrics, true, 3, Duration.ofSeconds(5));
+
+        List<Future<String>> futures = new ArrayList<>();
+        for (String message : List.of("precio P-001", "precio T-002", "stock V-003")) {
+            futures.add(callers.submit(() -> chatBatcher.complete(catalogPrompt, List.of(), message)));
+        }
+
+        for (Future<String> future : futures) {
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(RateLimitedException.class, exception.getCause());
+        }
+        verify(llmClient, times(1)).createChatCompletion(any());
+    }
+
+    @Test
+    void testBatchAnswersFitInOneCompletion() throws Exception {
+        ChatBatcher chatBatcher = new ChatBatcher(llmClient, metrics, true, 8, Duration.ofMillis(500));
+
+        List<String> completions = completeConcurrently(chatBatcher,
+                "precio P-001", "precio T-002", "stock V-003", "precio P-004", "stock T-005");
+
+        assertEquals(5, completions.size());
+        ArgumentCaptor<ChatCompletionRequest> requests = ArgumentCaptor.forClass(ChatCompletionRequest.class);
+        verify(llmClient, times(2)).createChatCompletion(requests.capture());
+        assertTrue(requests.getAllValues().stream().allMatch(request -> request.getMaxTokens() <= AiService.MAX_COMPLETION_TOKENS));
+    }
+
+    @Test
+    void testDisabledBatcherSendsEveryRequestRightAway() throws Exception {
+        ChatBatcher chatBatcher = new ChatBatcher(llmClient, metrics, false, 3, Duration.ofSeconds(5));
+
+        List<String> completions = completeConcurrently(chatBatcher, "precio P-001", "precio T-002", "stock V-003");
+
+        assertTrue(completions.stream().allMatch(completion -> completion.contains("alone")));
+        verify(llmClient, times(3)).createChatCompletion(any());
+    }
+
+    private List<String> completeConcurrently(ChatBatcher chatBatcher, String... messages) throws Exception {
+        List<Future<String>> futures = new ArrayList<>();
+        for (String message : messages) {
+            futures.add(callers.submit(() -> chatBatcher.complete(catalogPrompt, List.of(), message)));
+        }
+        List<String> completions = new ArrayList<>();
+        for (Future<String> future : futures) {
+            completions.add(future.get(10, TimeUnit.SECONDS));
+        }
+        return completions;
+    }
+
+    /**
+     * Stand-in for the model: answers a batch with one response per id, except the unanswered ones.
+     */
+    private ChatCompletionResult answer(ChatCompletionRequest request) throws Exception {
+        String userContent = request.getMessages().get(1).getContent();
+        if (!userContent.startsWith("[")) {
+            return result(objectMapper.createObjectNode().put("message", "alone " + userContent).toString());
+        }
+        if (batchFailure != null) {
+            throw batchFailure;
+        }
+        ObjectNode batchAnswer = objectMapper.createObjectNode();
+        ArrayNode responses = batchAnswer.putArray("responses");
+        for (JsonNode item : objectMapper.readTree(userContent)) {
+            String id = item.get("id").asText();
+            if (!unanswered.contains(id)) {
+                responses.addObject().put("id", id).put("message", "batched " + item.get("request").asText());
+            }
+        }
+        return result(batchAnswer.toString());
+    }
+
+    private static ChatCompletionResult result(String content) {
+        ChatCompletionChoice choice = new ChatCompletionChoice();
+        choice.setMessage(new ChatMessage("assistant", content));
+        ChatCompletionResult result = new ChatCompletionResult();
+        result.setChoices(List.of(choice));
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ChatRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void testBurstThenRefillAtTheConfiguredRate() {
+        ChatRateLimiter rateLimiter = new ChatRateLimiter(true, 60, 3, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquire("CLI-001");
+        }
+        RateLimitedException exception = assertThrows(RateLimitedException.class, () -> rateLimiter.acquire("CLI-001"));
+        assertEquals(Duration.ofSeconds(1), exception.getRetryAfter());
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        rateLimiter.acquire("CLI-001");
+        assertThrows(RateLimitedException.class, () -> rateLimiter.acquire("CLI-001"));
+        assertEquals(2, rateLimiter.getRejectedRequests());
+    }
+
+    @Test
+    void testClientsHaveSeparateBuckets() {
+        ChatRateLimiter rateLimiter = new ChatRateLimiter(true, 60, 1, now::get);
+
+        rateLimiter.acquire("CLI-001");
+        assertThrows(RateLimitedException.class, () -> rateLimiter.acquire("CLI-001"));
+        rateLimiter.acquire("CLI-002");
+    }
+
+    @Test
+    void testDisabledLimiterAdmitsEverything() {
+        ChatRateLimiter rateLimiter = new ChatRateLimiter(false, 1, 1, now::get);
+
+        for (int i = 0; i < 100; i++) {
+            rateLimiter.acquire("CLI-001");
+        }
+        assertEquals(0, rateLimiter.getRejectedRequests());
+    }
+
+    @Test
+    void testConcurrentRequestsNeverExceedTheBurst() throws Exception {
+        ChatRateLimiter rateLimiter = new ChatRateLimiter(true, 1, 50, now::get);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> requests = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                requests.add(() -> {
+                    try {
+                        rateLimiter.acquire("CLI-001");
+                        return true;
+                    } catch (RateLimitedException e) {
+                        return false;
+                    }
+                });
+            }
+            int admitted = 0;
+            for (Future<Boolean> admission : executor.invokeAll(requests)) {
+                if (admission.get()) {
+                    admitted++;
+                }
+            }
+            assertEquals(50, admitted);
+            assertEquals(350, rateLimiter.getRejectedRequests());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
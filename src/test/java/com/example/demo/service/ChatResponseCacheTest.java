@@ -0,0 +1,59 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatResponseCacheTest {
+
+    private static final String COMPLETION = "{\"message\": \"Estoy recuperando la información de precios y stock\", \"requestType\": \"request_info\", \"productCodes\": [\"P-001\"]}";
+
+    @Test
+    void testGet_MatchesNormalizedMessageAndCatalogVersion() {
+        ChatResponseCache cache = new ChatResponseCache(true, 10, Duration.ofMinutes(10));
+
+        cache.put("Precio perno hexagonal 1/4 x 2", 1, COMPLETION);
+
+        assertEquals(COMPLETION, cache.get("precio PERNO hexagonal 1/4\" x 2\"", 1).orElseThrow());
+        assertTrue(cache.get("precio perno hexagonal 1/4 x 2", 2).isEmpty());
+        assertTrue(cache.get("stock volandas M8", 1).isEmpty());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() {
+        ChatResponseCache cache = new ChatResponseCache(true, 2, Duration.ofMinutes(10));
+
+        cache.put("a", 1, COMPLETION);
+        cache.put("b", 1, COMPLETION);
+        cache.get("a", 1);
+        cache.put("c", 1, COMPLETION);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.get("a", 1).isPresent());
+        assertTrue(cache.get("b", 1).isEmpty());
+        assertTrue(cache.get("c", 1).isPresent());
+    }
+
+    @Test
+    void testGet_ExpiredEntry() {
+        ChatResponseCache cache = new ChatResponseCache(true, 10, Duration.ZERO);
+
+        cache.put("stock volandas M8", 1, COMPLETION);
+
+        assertTrue(cache.get("stock volandas M8", 1).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testDisabled() {
+        ChatResponseCache cache = new ChatResponseCache(false, 10, Duration.ofMinutes(10));
+
+        cache.put("stock volandas M8", 1, COMPLETION);
+
+        assertTrue(cache.get("stock volandas M8", 1).isEmpty());
+    }
+}
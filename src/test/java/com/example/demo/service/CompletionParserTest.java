@@ -0,0 +1,75 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionParserTest {
+
+    @Test
+    void testParse_ReadsRequestInfoWhateverTheFieldOrder() throws Exception {
+        ParsedCompletion completion = CompletionParser.parse("{\"productCodes\": [\"P-001\", \"V-005\"], "
+                + "\"notes\": {\"ignored\": [1, 2]}, \"message\": \"Estoy recuperando\", \"requestType\": \"request_info\"}");
+
+        assertEquals(ParsedCompletion.RequestType.REQUEST_INFO, completion.getRequestType());
+        assertEquals("Estoy recuperando", completion.getMessage());
+        assertEquals(List.of("P-001", "V-005"), completion.getProductCodes());
+        assertTrue(completion.getItems().isEmpty());
+    }
+
+    @Test
+    void testParse_ReadsPurchaseItemsAndDropsIncompleteLines() throws Exception {
+        ParsedCompletion completion = CompletionParser.parse("{\"requestType\": \"purchase\", \"items\": ["
+                + "{\"name\": \"Perno Hexagonal 1/4\\\" x 2\\\" Acero Zincado\", \"quantity\": 100},"
+                + "{\"name\": \"Tuerca Hexagonal 1/4\\\" Acero Zincado\"},"
+                + "{\"quantity\": \"20\", \"name\": \"Volanda Plana 1/4\\\" Acero Zincado\"}]}");
+
+        assertEquals(ParsedCompletion.RequestType.PURCHASE, completion.getRequestType());
+        assertNull(completion.getMessage());
+        assertEquals(2, completion.getItems().size());
+        assertEquals("Perno Hexagonal 1/4\" x 2\" Acero Zincado", completion.getItems().get(0).getName());
+        assertEquals(100, completion.getItems().get(0).getQuantity());
+        assertEquals("Volanda Plana 1/4\" Acero Zincado", completion.getItems().get(1).getName());
+        assertEquals(20, completion.getItems().get(1).getQuantity());
+    }
+
+    @Test
+    void testParse_ExtractsTheObjectFromACodeFence() throws Exception {
+        ParsedCompletion completion = CompletionParser.parse(
+                "```json\n{\"requestType\": \"request_info\", \"productCodes\": [\"P-001\"], \"message\": \"Listo\"}\n```");
+
+        assertEquals(ParsedCompletion.RequestType.REQUEST_INFO, completion.getRequestType());
+        assertEquals(List.of("P-001"), completion.getProductCodes());
+    }
+
+    @Test
+    void testParse_SkipsLeadingProseEvenWithBraces() throws Exception {
+        ParsedCompletion completion = CompletionParser.parse("Claro, aquí tienes la respuesta {en JSON}:\n"
+                + "{\"requestType\": \"unknown\", \"message\": \"¿Qué producto necesitas?\"}\nEspero que ayude.");
+
+        assertEquals(ParsedCompletion.RequestType.UNKNOWN, completion.getRequestType());
+        assertTrue(completion.hasRequestType());
+        assertEquals("¿Qué producto necesitas?", completion.getMessage());
+    }
+
+    @Test
+    void testParse_UnexpectedRequestTypeIsUnknown() throws Exception {
+        ParsedCompletion completion = CompletionParser.parse("{\"requestType\": \"refund\", \"message\": \"Hola\"}");
+
+        assertEquals(ParsedCompletion.RequestType.UNKNOWN, completion.getRequestType());
+    }
+
+    @Test
+    void testParse_TruncatedCompletionFailsInsteadOfReturningANestedObject() {
+        assertThrows(JsonProcessingException.class, () -> CompletionParser.parse(
+                "{\"requestType\": \"purchase\", \"items\": [{\"name\": \"Perno\", \"quantity\": 3}"));
+    }
+
+    @Test
+    void testParse_TextWithoutJsonFails() {
+        assertThrows(JsonProcessingException.class, () -> CompletionParser.parse("This is not valid JSON at all"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ChatResponse;
+import com.example.demo.model.Product;
+import com.example.demo.repository.DatasetLoader;
+import com.example.demo.repository.DatasetWatcher;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.PurchaseLog;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FastPathClassifierTest {
+
+    private final ProductRepository productRepository = new ProductRepository(
+            new DatasetLoader(2, "", ""), new DatasetWatcher("", Duration.ofMillis(500)), new PurchaseLog("", 0));
+    private final FastPathClassifier classifier = new FastPathClassifier(productRepository, true);
+
+    @Test
+    void testTryAnswer_ProductCodes() {
+        Optional<ChatResponse> response = classifier.tryAnswer("precio de P-001 y t-003", "CLI-001");
+
+        assertTrue(response.isPresent());
+        assertEquals("CLI-001", response.get().getClient());
+        assertEquals(FastPathClassifier.REQUEST_INFO_MESSAGE, response.get().getResponseMessage());
+        assertEquals("request_info", response.get().getInformation().getType());
+        assertEquals(List.of("P-001", "T-003"), codes(response.get()));
+        assertEquals(1, classifier.getServedCount());
+    }
+
+    @Test
+    void testTryAnswer_ExactProductName() {
+        Optional<ChatResponse> response = classifier.tryAnswer("¿Stock de Volanda de Presión 3/8\"?", "CLI-002");
+
+        assertTrue(response.isPresent());
+        assertEquals(List.of("V-004"), codes(response.get()));
+    }
+
+    @Test
+    void testTryAnswer_FallsBackToLlmWhenNotConfident() {
+        // Partial names, purchases, unknown codes and free text go to the LLM
+        assertTrue(classifier.tryAnswer("precio de pernos hexagonales", "CLI-001").isEmpty());
+        assertTrue(classifier.tryAnswer("quiero comprar 10 P-001", "CLI-001").isEmpty());
+        assertTrue(classifier.tryAnswer("stock de P-999", "CLI-001").isEmpty());
+        assertTrue(classifier.tryAnswer("¿Qué me recomiendas para madera?", "CLI-001").isEmpty());
+        assertEquals(0, classifier.getServedCount());
+    }
+
+    @Test
+    void testTryAnswer_Disabled() {
+        FastPathClassifier disabled = new FastPathClassifier(productRepository, false);
+
+        assertTrue(disabled.tryAnswer("precio de P-001", "CLI-001").isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> codes(ChatResponse response) {
+        return ((List<Product>) response.getInformation().getResponse()).stream()
+                .map(Product::getCodigoProducto)
+                .toList();
+    }
+}
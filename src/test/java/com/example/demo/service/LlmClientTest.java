@@ -0,0 +1,200 @@
+package com.example.demo.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link LlmClient} against a local stub of the chat completions endpoint that answers with scripted
+ * latencies and status codes.
+ */
+class LlmClientTest {
+    private static final String COMPLETION = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":0,"
+            + "\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"index\":0,"
+            + "\"message\":{\"role\":\"assistant\",\"content\":\"{\\\"requestType\\\":\\\"unknown\\\"}\"},"
+            + "\"finish_reason\":\"stop\"}]}";
+    private static final String ERROR = "{\"error\":{\"message\":\"stub error\",\"type\":\"server_error\"}}";
+
+    private final ConcurrentLinkedQueue<StubResponse> script = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private LlmClient llmClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/chat/completions", this::respond);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (llmClient != null) {
+            llmClient.destroy();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void testRetriesAfterTheDelayTheServerAsksFor() {
+        llmClient = client(Duration.ofSeconds(10), 2, 5);
+        script.add(new StubResponse(429, Map.of("Retry-After", "1"), 0, ERROR));
+        script.add(new StubResponse(200, Map.of(), 0, COMPLETION));
+
+        long start = System.nanoTime();
+        ChatCompletionResult result = llmClient.createChatCompletion(request());
+
+        assertEquals("{\"requestType\":\"unknown\"}", result.getChoices().get(0).getMessage().getContent());
+        assertEquals(2, requests.get());
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(950).toNanos(), "Retry-After was not respected");
+    }
+
+    @Test
+    void testServerErrorsAreRetriedAtMostMaxRetriesTimes() {
+        llmClient = client(Duration.ofSeconds(10), 2, 5);
+        for (int i = 0; i < 5; i++) {
+            script.add(new StubResponse(503, Map.of(), 0, ERROR));
+        }
+
+        assertThrows(LlmUnavailableException.class, () -> llmClient.createChatCompletion(request()));
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void testRejectedRequestIsNeitherRetriedNorUnavailable() {
+        llmClient = client(Duration.ofSeconds(10), 2, 1);
+        script.add(new StubResponse(400, Map.of(), 0, ERROR));
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> llmClient.createChatCompletion(request()));
+        assertTrue(!(exception instanceof LlmUnavailableException));
+        assertEquals(1, requests.get());
+        assertEquals(CircuitBreaker.State.CLOSED, llmClient.getCircuitState());
+    }
+
+    @Test
+    void testSlowResponseFailsAtTheCallDeadline() {
+        llmClient = client(Duration.ofMillis(500), 0, 5);
+        script.add(new StubResponse(200, Map.of(), 2000, COMPLETION));
+
+        long start = System.nanoTime();
+        assertThrows(LlmUnavailableException.class, () -> llmClient.createChatCompletion(request()));
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(1500).toNanos(), "The deadline was not enforced");
+    }
+
+    @Test
+    void testOpenCircuitFailsFastWithoutCallingTheServer() {
+        llmClient = client(Duration.ofSeconds(10), 0, 2);
+        script.add(new StubResponse(500, Map.of(), 0, ERROR));
+        script.add(new StubResponse(500, Map.of(), 0, ERROR));
+
+        assertThrows(LlmUnavailableException.class, () -> llmClient.createChatCompletion(request()));
+        assertThrows(LlmUnavailableException.class, () -> llmClient.createChatCompletion(request()));
+        assertEquals(CircuitBreaker.State.OPEN, llmClient.getCircuitState());
+
+        script.add(new StubResponse(200, Map.of(), 0, COMPLETION));
+        assertThrows(LlmUnavailableException.class, () -> llmClient.createChatCompletion(request()));
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    void testCallBeyondTheInFlightCapIsRefusedRightAway() throws Exception {
+        llmClient = client(Duration.ofSeconds(10), 0, 5, 1);
+        script.add(new StubResponse(200, Map.of(), 1000, COMPLETION));
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<ChatCompletionResult> slowCall = caller.submit(() -> llmClient.createChatCompletion(request()));
+            while (requests.get() == 0) {
+                Thread.sleep(10);
+            }
+
+            long start = System.nanoTime();
+            assertThrows(RateLimitedException.class, () -> llmClient.createChatCompletion(request()));
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+            assertEquals(1, llmClient.getInFlight());
+
+            slowCall.get(5, TimeUnit.SECONDS);
+            assertEquals(0, llmClient.getInFlight());
+            assertEquals(1, llmClient.getRejectedCalls());
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    private LlmClient client(Duration callTimeout, int maxRetries, int failureThreshold) {
+        return client(callTimeout, maxRetries, failureThreshold, 8);
+    }
+
+    private LlmClient client(Duration callTimeout, int maxRetries, int failureThreshold, int maxInFlight) {
+        return new LlmClient("sk-test", "http://localhost:" + server.getAddress().getPort() + "/",
+                Duration.ofSeconds(1), Duration.ofSeconds(5), callTimeout, maxInFlight, 4, Duration.ofMinutes(1),
+                maxRetries, Duration.ofMillis(10), Duration.ofSeconds(2), failureThreshold, Duration.ofMinutes(1));
+    }
+
+    private static ChatCompletionRequest request() {
+        return ChatCompletionRequest.builder()
+                .model("gpt-3.5-turbo")
+                .messages(List.of(new ChatMessage("user", "Hola")))
+                .build();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        exchange.getRequestBody().readAllBytes();
+        StubResponse response = script.poll();
+        if (response == null) {
+            response = new StubResponse(500, Map.of(), 0, ERROR);
+        }
+        try {
+            Thread.sleep(response.delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        response.headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+        try (OutputStream out = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(response.status, body.length);
+            out.write(body);
+        } catch (IOException e) {
+            // The client gave up waiting
+        }
+    }
+
+    private static final class StubResponse {
+        private final int status;
+        private final Map<String, String> headers;
+        private final long delayMillis;
+        private final String body;
+
+        private StubResponse(int status, Map<String, String> headers, long delayMillis, String body) {
+            this.status = status;
+            this.headers = headers;
+            this.delayMillis = delayMillis;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Client;
+import com.example.demo.model.CompletedPurchase;
+import com.example.demo.model.PurchaseItem;
+import com.example.demo.repository.CompletedPurchaseRepository;
+import com.example.demo.repository.DatasetLoader;
+import com.example.demo.repository.DatasetWatcher;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.PurchaseLog;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PurchaseServiceTest {
+
+    private final DatasetLoader datasetLoader = new DatasetLoader(2, "", "");
+    private final ProductRepository productRepository = new ProductRepository(
+            datasetLoader, new DatasetWatcher("", Duration.ofMillis(500)), new PurchaseLog("", 0));
+    private final CompletedPurchaseRepository purchaseRepository = new CompletedPurchaseRepository(datasetLoader, new PurchaseLog("", 0));
+    private final PurchaseService purchaseService = new PurchaseService(productRepository, purchaseRepository, 300);
+    private final Client client = new Client("CLI-001", "Juan Carlos Rodríguez Pérez", "Av. Test", "San Isidro", "Lima", "123456", "test@email.com");
+
+    @Test
+    void testPurchase_TakesStockAndRecordsPurchase() {
+        long version = productRepository.getVersion();
+        long stockVersion = productRepository.getStockVersion();
+        Map<String, Integer> items = new LinkedHashMap<>();
+        items.put("Perno Hexagonal 1/4\" x 2\" Acero Zincado", 100);
+        items.put("T-001", 300);
+
+        CompletedPurchase purchase = purchaseService.purchase(client, items);
+
+        assertEquals("COMP-021", purchase.getCodigoCompra());
+        assertEquals("CLI-001", purchase.getCodigoCliente());
+        List<PurchaseItem> lines = purchase.getProductos();
+        assertEquals("P-001", lines.get(0).getCodigoProducto());
+        assertEquals(0.45, lines.get(0).getPrecioUnitario());
+        assertEquals(45.00, lines.get(0).getSubtotal());
+        // 300 units or more are charged the wholesale price
+        assertEquals(0.12, lines.get(1).getPrecioUnitario());
+        assertEquals(36.00, lines.get(1).getSubtotal());
+        assertEquals(81.00, purchase.getMontoTotal());
+
+        assertEquals(1100, productRepository.findByCodigoProducto("P-001").orElseThrow().getCantidadStock());
+        assertTrue(productRepository.getStockVersion() > stockVersion);
+        // The catalog itself did not change: prompts and cached completions stay valid
+        assertEquals(version, productRepository.getVersion());
+        assertEquals(purchase, purchaseRepository.findByCodigoCompra("COMP-021").orElseThrow());
+        assertTrue(purchaseRepository.findByCodigoCliente("CLI-001").contains(purchase));
+    }
+
+    @Test
+    void testPurchase_InsufficientStockTakesNothing() {
+        int tuercaStock = productRepository.findByCodigoProducto("T-001").orElseThrow().getCantidadStock();
+        Map<String, Integer> items = new LinkedHashMap<>();
+        items.put("T-001", 10);
+        items.put("P-001", 1201);
+
+        PurchaseRejectedException exception = assertThrows(PurchaseRejectedException.class,
+                () -> purchaseService.purchase(client, items));
+
+        assertTrue(exception.getMessage().contains("quedan 1200 unidades"));
+        assertEquals(tuercaStock, productRepository.findByCodigoProducto("T-001").orElseThrow().getCantidadStock());
+        assertEquals(1200, productRepository.findByCodigoProducto("P-001").orElseThrow().getCantidadStock());
+        assertEquals(20, purchaseRepository.findAll().size());
+    }
+
+    @Test
+    void testPurchase_RejectsUnknownProduct() {
+        assertThrows(PurchaseRejectedException.class,
+                () -> purchaseService.purchase(client, Map.of("Tornillo Dorado", 5)));
+        assertThrows(PurchaseRejectedException.class,
+                () -> purchaseService.purchase(client, Map.of("P-001", 0)));
+    }
+
+    @Test
+    void testPurchase_ConcurrentBuyersNeverOversell() throws Exception {
+        // 1200 units of P-001: 40 of the 60 buyers of 30 units can be served
+        int buyers = 60;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < buyers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    purchaseService.purchase(client, Map.of("P-001", 30));
+                    return true;
+                } catch (PurchaseRejectedException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int served = 0;
+        for (Future<Boolean> result : results) {
+            served += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        executor.shutdown();
+
+        assertEquals(40, served);
+        assertEquals(0, productRepository.findByCodigoProducto("P-001").orElseThrow().getCantidadStock());
+        assertEquals(20 + 40, purchaseRepository.findAll().size());
+    }
+}
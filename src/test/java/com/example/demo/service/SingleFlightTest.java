@@ -0,0 +1,111 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String> singleFlight = new SingleFlight<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Map<CompletableFuture<?>, Thread> threads = new ConcurrentHashMap<>();
+
+    @Test
+    void testConcurrentCallsForTheSameKeyShareOneCall() throws Exception {
+        CompletableFuture<SingleFlight.Result<String>> leader = runInThread("precio p-001", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "completion";
+        });
+        awaitInFlight();
+        CompletableFuture<SingleFlight.Result<String>> follower = runInThread("precio p-001", () -> {
+            calls.incrementAndGet();
+            return "other completion";
+        });
+        awaitWaiting(follower);
+        release.countDown();
+
+        assertEquals("completion", leader.get(5, TimeUnit.SECONDS).getValue());
+        assertFalse(leader.get().isShared());
+        assertEquals("completion", follower.get(5, TimeUnit.SECONDS).getValue());
+        assertTrue(follower.get().isShared());
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    void testFailureIsSharedAndNotRemembered() throws Exception {
+        LlmUnavailableException failure = new LlmUnavailableException("OpenAI circuit breaker is open");
+        CompletableFuture<SingleFlight.Result<String>> leader = runInThread("precio p-001", () -> {
+            await(release);
+            throw failure;
+        });
+        awaitInFlight();
+        CompletableFuture<SingleFlight.Result<String>> follower = runInThread("precio p-001", () -> "unused");
+        awaitWaiting(follower);
+        release.countDown();
+
+        assertSame(failure, assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals("next", singleFlight.run("precio p-001", () -> "next").getValue());
+    }
+
+    @Test
+    void testDifferentKeysDoNotWaitForEachOther() {
+        singleFlight.run("precio p-001", () -> {
+            assertEquals("tuercas", singleFlight.run("precio t-002", () -> "tuercas").getValue());
+            return "pernos";
+        });
+    }
+
+    private CompletableFuture<SingleFlight.Result<String>> runInThread(String key, Supplier<String> call) {
+        CompletableFuture<SingleFlight.Result<String>> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(singleFlight.run(key, call));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        threads.put(result, thread);
+        thread.start();
+        return result;
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        while (singleFlight.size() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Wait until the caller is parked on the call in flight.
+     */
+    private void awaitWaiting(CompletableFuture<?> caller) throws InterruptedException {
+        Thread thread = threads.get(caller);
+        while (thread.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
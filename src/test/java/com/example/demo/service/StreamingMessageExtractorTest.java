@@ -0,0 +1,47 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingMessageExtractorTest {
+
+    @Test
+    void testAppend_ForwardsMessageTextAsItArrives() {
+        StreamingMessageExtractor extractor = new StreamingMessageExtractor();
+
+        assertEquals("", extractor.append("{\"mess"));
+        assertEquals("", extractor.append("age\": "));
+        assertEquals("Estoy rec", extractor.append("\"Estoy rec"));
+        assertEquals("uperando", extractor.append("uperando\", \"requestType\": "));
+        assertEquals("", extractor.append("\"request_info\", \"productCodes\": [\"P-001\"]}"));
+
+        assertEquals("{\"message\": \"Estoy recuperando\", \"requestType\": \"request_info\", \"productCodes\": [\"P-001\"]}",
+                extractor.getCompletion());
+    }
+
+    @Test
+    void testAppend_DecodesEscapesSplitAcrossChunks() {
+        StreamingMessageExtractor extractor = new StreamingMessageExtractor();
+
+        assertEquals("Perno 1/4", extractor.append("{\"message\":\"Perno 1/4\\"));
+        assertEquals("\" informaci", extractor.append("\" informaci\\u00"));
+        assertEquals("ón", extractor.append("f3n\"}"));
+    }
+
+    @Test
+    void testAppend_IgnoresMessageUsedAsValue() {
+        StreamingMessageExtractor extractor = new StreamingMessageExtractor();
+
+        assertEquals("", extractor.append("{\"items\": [{\"name\": \"message\", \"quantity\": 1}], "));
+        assertEquals("Procesando", extractor.append("\"message\": \"Procesando\"}"));
+    }
+
+    @Test
+    void testAppend_NotJson() {
+        StreamingMessageExtractor extractor = new StreamingMessageExtractor();
+
+        assertEquals("", extractor.append("This is not valid JSON at all"));
+        assertEquals("This is not valid JSON at all", extractor.getCompletion());
+    }
+}